@@ -1,7 +1,6 @@
 package com.chenjin.config;
 
 import ai.djl.MalformedModelException;
-import ai.djl.inference.Predictor;
 import ai.djl.modality.cv.Image;
 import ai.djl.modality.cv.ImageFactory;
 import ai.djl.ndarray.NDList;
@@ -12,18 +11,35 @@ import ai.djl.repository.zoo.ModelNotFoundException;
 import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
 import ai.djl.training.util.ProgressBar;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.chenjin.exception.SignException;
+import com.chenjin.pojo.bo.RecognizedText;
+import com.chenjin.service.ocr.cache.OcrResultCache;
+import com.chenjin.service.ocr.model.BlankPageDetector;
+import com.chenjin.service.ocr.model.DetectionBatchScheduler;
+import com.chenjin.service.ocr.model.NDMemoryGauge;
 import com.chenjin.service.ocr.model.OcrV4Recognition;
+import com.chenjin.service.ocr.model.PredictorPool;
+import com.chenjin.service.ocr.model.TiledDetection;
+import com.chenjin.service.ocr.properties.OcrProperties;
 import com.chenjin.service.ocr.translator.OCRDetectionTranslator;
 import com.chenjin.service.ocr.translator.PpWordRecTranslator;
+import com.chenjin.service.ocr.translator.WidthBuckets;
+import com.chenjin.service.pdf.cache.PdfTextIndexCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Paths;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -32,14 +48,22 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author <yanrui yanrui0910@163.com>
  * @since 2024-10-27 18:13
  **/
+@Slf4j
 @Configuration
+@EnableConfigurationProperties(OcrProperties.class)
 public class OcrConfig {
 
+    /**
+     * 决定识别结果的模型文件
+     */
+    private static final String[] MODEL_RESOURCES = {
+            "models/det_inference.onnx", "models/rec_inference.onnx", "models/dict.txt"};
+
     /**
      * 文本框检测模型
      */
     @Bean
-    public ZooModel<Image, NDList> detModel() {
+    public ZooModel<Image, NDList> detModel(OcrProperties ocrProperties) {
         ZooModel<Image, NDList> detModel = null;
         try {
             ClassLoader classLoader = OcrConfig.class.getClassLoader();
@@ -56,6 +80,7 @@ public class OcrConfig {
                     .setTypes(Image.class, NDList.class)
                     .optModelPath(Paths.get(uri))
                     .optTranslator(new OCRDetectionTranslator(new ConcurrentHashMap<String, String>()))
+                    .optOptions(sessionOptions("检测", ocrProperties.getDet().getSession()))
                     .optProgress(new ProgressBar())
                     .build();
             detModel = ModelZoo.loadModel(criteria);
@@ -66,16 +91,49 @@ public class OcrConfig {
     }
 
     @Bean
-    public OcrV4Recognition recognition(NDManager manager, Predictor<Image, NDList> detector, Predictor<Image, String> recognizer) {
-        return new OcrV4Recognition(manager, detector, recognizer);
+    public OcrV4Recognition recognition(NDMemoryGauge memoryGauge,
+                                        ObjectProvider<PredictorPool<Image, NDList>> detectorPool,
+                                        PredictorPool<Image, RecognizedText> recognizerPool,
+                                        ObjectProvider<DetectionBatchScheduler> detectionScheduler,
+                                        ObjectProvider<TiledDetection> tiledDetection,
+                                        WidthBuckets widthBuckets,
+                                        OcrProperties ocrProperties) {
+        OcrProperties.Keyword keyword = ocrProperties.getKeyword();
+        return new OcrV4Recognition(memoryGauge, detectorPool.getIfAvailable(), recognizerPool,
+                detectionScheduler.getIfAvailable(), tiledDetection.getIfAvailable(), widthBuckets,
+                ocrProperties.getRec().getBatchSize(), keyword.isCoarseToFine() ? keyword.getCoarseSide() : 0,
+                keyword.getMinCharConfidence());
+    }
+
+    /**
+     * 大图分块并行检测
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "ocr.det.tile", name = "enabled", havingValue = "true")
+    public TiledDetection tiledDetection(OcrProperties ocrProperties) {
+        OcrProperties.Tile tile = ocrProperties.getDet().getTile();
+        return new TiledDetection(tile.getTileSize(), tile.getOverlap(), tile.getMinSide(),
+                ocrProperties.getPool().resolveSize());
+    }
+
+    /**
+     * 文字检测跨请求合批调度器
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ocr.det.batch", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public DetectionBatchScheduler detectionScheduler(ZooModel<Image, NDList> detModel, OcrProperties ocrProperties) {
+        OcrProperties.Batch batch = ocrProperties.getDet().getBatch();
+        return new DetectionBatchScheduler(detModel, new OCRDetectionTranslator(new ConcurrentHashMap<String, String>()),
+                ocrProperties.getPool().resolveSize(), batch.getWindow(), batch.getMaxSize(),
+                ocrProperties.getPool().getWaitTimeout());
     }
 
     /**
      * 文本框识别模型
      */
     @Bean
-    public ZooModel<Image, String> recModel() {
-        ZooModel<Image, String> detModel = null;
+    public ZooModel<Image, RecognizedText> recModel(WidthBuckets widthBuckets, OcrProperties ocrProperties) {
+        ZooModel<Image, RecognizedText> detModel = null;
         try {
             ClassLoader classLoader = OcrConfig.class.getClassLoader();
             URL modelUrl = classLoader.getResource("models/rec_inference.onnx");
@@ -86,12 +144,13 @@ public class OcrConfig {
             } catch (URISyntaxException e) {
                 throw new SignException("没有找到识别模型");
             }
-            Criteria<Image, String> criteria = Criteria.builder()
+            Criteria<Image, RecognizedText> criteria = Criteria.builder()
                     .optEngine("OnnxRuntime")
-                    .setTypes(Image.class, String.class)
+                    .setTypes(Image.class, RecognizedText.class)
                     .optModelPath(Paths.get(uri))
                     .optProgress(new ProgressBar())
-                    .optTranslator(new PpWordRecTranslator(new ConcurrentHashMap<String, String>()))
+                    .optTranslator(new PpWordRecTranslator(new ConcurrentHashMap<String, String>(), widthBuckets))
+                    .optOptions(sessionOptions("识别", ocrProperties.getRec().getSession()))
                     .build();
             detModel = ModelZoo.loadModel(criteria);
         } catch (IOException | ModelNotFoundException | MalformedModelException e) {
@@ -101,19 +160,96 @@ public class OcrConfig {
     }
 
     /**
-     * 文本框检测推理器
+     * 空白页判断（pdf按图片查找关键词前跳过没有文字的页面）
      */
     @Bean
-    public Predictor<Image, NDList> detector(ZooModel<Image, NDList> detModel) {
-        return detModel.newPredictor();
+    @ConditionalOnProperty(prefix = "ocr.blank-page", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public BlankPageDetector blankPageDetector(OcrProperties ocrProperties) {
+        OcrProperties.BlankPage blankPage = ocrProperties.getBlankPage();
+        return new BlankPageDetector(blankPage.getInkThreshold(), blankPage.getMinInkRatio(),
+                blankPage.isLineCheck());
     }
 
     /**
-     * 文本框识别推理器
+     * 文字识别输入宽度分桶
      */
     @Bean
-    public Predictor<Image, String> recognizer(ZooModel<Image, String> recModel) {
-        return recModel.newPredictor();
+    public WidthBuckets widthBuckets(OcrProperties ocrProperties) {
+        WidthBuckets widthBuckets = new WidthBuckets(ocrProperties.getRec().getWidthBuckets().stream()
+                .mapToInt(Integer::intValue).toArray());
+        log.info("识别模型输入宽度分桶：{}", widthBuckets);
+        return widthBuckets;
+    }
+
+    /**
+     * 推理会话参数
+     */
+    private Map<String, String> sessionOptions(String modelName, OcrProperties.Session session) {
+        Map<String, String> options = session.toOptions();
+        log.info("{}模型推理会话预设：{}，参数：{}", modelName, session.getPreset(), options);
+        return options;
+    }
+
+    /**
+     * 文本框检测推理器池（开启检测合批时由合批调度器持有检测推理器，不再创建）
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ocr.det.batch", name = "enabled", havingValue = "false")
+    public PredictorPool<Image, NDList> detectorPool(ZooModel<Image, NDList> detModel, OcrProperties ocrProperties) {
+        OcrProperties.Pool pool = ocrProperties.getPool();
+        return new PredictorPool<>("detector", pool.resolveSize(), pool.getWaitTimeout(), detModel::newPredictor);
+    }
+
+    /**
+     * 文本框识别推理器池
+     */
+    @Bean
+    public PredictorPool<Image, RecognizedText> recognizerPool(ZooModel<Image, RecognizedText> recModel, OcrProperties ocrProperties) {
+        OcrProperties.Pool pool = ocrProperties.getPool();
+        return new PredictorPool<>("recognizer", pool.resolveSize(), pool.getWaitTimeout(), recModel::newPredictor);
+    }
+
+    /**
+     * ocr识别结果缓存（模型版本取模型文件的摘要，替换模型后旧缓存自动失效）
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ocr.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public OcrResultCache ocrResultCache(OcrProperties ocrProperties) {
+        OcrProperties.Cache cache = ocrProperties.getCache();
+        OcrProperties.Disk disk = cache.getDisk();
+        return new OcrResultCache(modelVersion(), cache.getMaximumSize(), cache.getExpireAfterAccess(),
+                disk.isEnabled() ? Paths.get(disk.getDir()) : null, disk.getMaxEntries());
+    }
+
+    /**
+     * pdf文字层位置索引缓存
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "ocr.pdf.index", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public PdfTextIndexCache pdfTextIndexCache(OcrProperties ocrProperties) {
+        OcrProperties.Index index = ocrProperties.getPdf().getIndex();
+        OcrProperties.Disk disk = index.getDisk();
+        return new PdfTextIndexCache(index.getMaximumGlyphs(), index.getExpireAfterAccess(),
+                disk.isEnabled() ? Paths.get(disk.getDir()) : null, disk.getMaxEntries());
+    }
+
+    /**
+     * 模型版本：检测模型、识别模型和字典文件内容的摘要
+     */
+    private String modelVersion() {
+        ClassLoader classLoader = OcrConfig.class.getClassLoader();
+        StringBuilder digests = new StringBuilder();
+        for (String resource : MODEL_RESOURCES) {
+            try (InputStream is = classLoader.getResourceAsStream(resource)) {
+                if (null == is) {
+                    throw new SignException("没有找到模型文件：" + resource);
+                }
+                digests.append(DigestUtil.sha256Hex(is));
+            } catch (IOException e) {
+                throw new SignException("读取模型文件失败：" + resource);
+            }
+        }
+        return DigestUtil.sha256Hex(digests.toString()).substring(0, 16);
     }
 
     /**
@@ -121,7 +257,15 @@ public class OcrConfig {
      */
     @Bean
     public NDManager manager() {
-        return NDManager.newBaseManager();
+        return NDManager.newBaseManager("OnnxRuntime");
+    }
+
+    /**
+     * 请求级内存管理器的创建及NDArray内存统计
+     */
+    @Bean
+    public NDMemoryGauge ndMemoryGauge(NDManager manager) {
+        return new NDMemoryGauge(manager);
     }
 
     /**
@@ -4,6 +4,8 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.util.Objects;
+
 /**
  * 签章服务系统常量
  *
@@ -43,4 +45,51 @@ public final class SignConstants {
         }
     }
 
+    /**
+     * 关键词命中方式（与签章参数multiPos对应）
+     */
+    @Getter
+    public enum KEYWORD_HIT_MODE {
+        /**
+         * 只取最后一个（multiPos为空）
+         */
+        LAST(null),
+        /**
+         * 只允许出现一次（multiPos为0）
+         */
+        UNIQUE(0),
+        /**
+         * 所有位置（multiPos为1）
+         */
+        ALL(1),
+        /**
+         * 只取第一个（multiPos为2）
+         */
+        FIRST(2);
+
+        private Integer multiPos;
+        KEYWORD_HIT_MODE(Integer multiPos) {
+            this.multiPos = multiPos;
+        }
+
+        /**
+         * 通过multiPos获取命中方式
+         */
+        public static KEYWORD_HIT_MODE of(Integer multiPos) {
+            for (KEYWORD_HIT_MODE mode : values()) {
+                if (Objects.equals(mode.multiPos, multiPos)) {
+                    return mode;
+                }
+            }
+            return LAST;
+        }
+
+        /**
+         * 按页查找时第index个查找的页码（从0开始），LAST从最后一页往前，其他从第一页往后
+         */
+        public int pageAt(int totalPages, int index) {
+            return LAST == this ? totalPages - 1 - index : index;
+        }
+    }
+
 }
@@ -0,0 +1,59 @@
+package com.chenjin.controller.ocr;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.ndarray.NDList;
+import cn.hutool.core.lang.Dict;
+import com.chenjin.pojo.bo.RecognizedText;
+import com.chenjin.service.ocr.cache.OcrResultCache;
+import com.chenjin.service.ocr.model.BlankPageDetector;
+import com.chenjin.service.ocr.model.DetectionBatchScheduler;
+import com.chenjin.service.ocr.model.NDMemoryGauge;
+import com.chenjin.service.ocr.model.PredictorPool;
+import com.chenjin.service.pdf.cache.PdfTextIndexCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * ocr运行状态接口
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 10:05
+ **/
+@RestController
+@RequestMapping("/ocr")
+@RequiredArgsConstructor
+public class OcrController {
+
+    private final ObjectProvider<PredictorPool<Image, NDList>> detectorPool;
+
+    private final PredictorPool<Image, RecognizedText> recognizerPool;
+
+    private final NDMemoryGauge ndMemoryGauge;
+
+    private final ObjectProvider<DetectionBatchScheduler> detectionScheduler;
+
+    private final ObjectProvider<OcrResultCache> ocrResultCache;
+
+    private final ObjectProvider<BlankPageDetector> blankPageDetector;
+
+    private final ObjectProvider<PdfTextIndexCache> pdfTextIndexCache;
+
+    /**
+     * 推理器池、NDArray内存、检测合批、结果缓存、空白页跳过及pdf文字层索引情况
+     */
+    @GetMapping("/stats")
+    public Dict stats() {
+        Dict stats = Dict.create()
+                .set("recognizerPool", recognizerPool.stats())
+                .set("ndMemory", ndMemoryGauge.stats());
+        detectorPool.ifAvailable(pool -> stats.set("detectorPool", pool.stats()));
+        detectionScheduler.ifAvailable(scheduler -> stats.set("detectionScheduler", scheduler.stats()));
+        ocrResultCache.ifAvailable(cache -> stats.set("resultCache", cache.stats()));
+        blankPageDetector.ifAvailable(detector -> stats.set("blankPage", detector.stats()));
+        pdfTextIndexCache.ifAvailable(cache -> stats.set("pdfTextIndex", cache.stats()));
+        return stats;
+    }
+}
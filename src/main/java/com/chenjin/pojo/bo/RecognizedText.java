@@ -0,0 +1,59 @@
+package com.chenjin.pojo.bo;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 文字框识别结果
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 15:50
+ **/
+@Getter
+@ToString
+@AllArgsConstructor
+public class RecognizedText {
+    /**
+     * 识别的文字
+     */
+    private final String text;
+    /**
+     * 置信度（各字符最大概率的平均值，没有文字时为0）
+     */
+    private final float confidence;
+    /**
+     * 每个输出字符的概率（与字典项一一对应，字典项几乎都是单个字符）
+     */
+    @Getter(AccessLevel.NONE)
+    private final float[] charConfidences;
+
+    /**
+     * 第index个字符的概率
+     */
+    public float charConfidence(int index) {
+        return charConfidences[index];
+    }
+
+    /**
+     * 字符数量
+     */
+    public int charCount() {
+        return charConfidences.length;
+    }
+
+    /**
+     * 最低的字符概率（没有文字时为0）
+     */
+    public float minCharConfidence() {
+        if (charConfidences.length == 0) {
+            return 0;
+        }
+        float min = charConfidences[0];
+        for (float charConfidence : charConfidences) {
+            min = Math.min(min, charConfidence);
+        }
+        return min;
+    }
+}
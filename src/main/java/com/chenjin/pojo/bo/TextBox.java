@@ -0,0 +1,129 @@
+package com.chenjin.pojo.bo;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 识别出的文字框（不可变）
+ * 坐标以基本类型保存，排序、分行用到的最小x、最小y及中心点在创建时计算好，比较时不再访问坐标数组
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 15:50
+ **/
+@Getter
+@ToString
+public final class TextBox implements Comparable<TextBox> {
+
+    /**
+     * 四个点 lt, rt, rb, lb (x, y)
+     */
+    @Getter(AccessLevel.NONE)
+    private final float[] points;
+
+    private final float minX;
+
+    private final float minY;
+
+    private final float centerX;
+
+    private final float centerY;
+
+    /**
+     * 识别的文字（仅检测、尚未识别时为空）
+     */
+    private final String text;
+
+    /**
+     * 识别置信度
+     */
+    private final float confidence;
+
+    /**
+     * 最低的字符概率（用于过滤个别字符识别不可靠的文字框）
+     */
+    private final float minCharConfidence;
+
+    /**
+     * 构造器
+     *
+     * @param points            四个点 lt, rt, rb, lb (x, y)，长度为8，不做拷贝，调用方不能再修改
+     * @param text              识别的文字
+     * @param confidence        识别置信度
+     * @param minCharConfidence 最低的字符概率
+     */
+    public TextBox(float[] points, String text, float confidence, float minCharConfidence) {
+        if (points.length != 8) {
+            throw new IllegalArgumentException("文字框坐标长度必须为8");
+        }
+        this.points = points;
+        this.text = text;
+        this.confidence = confidence;
+        this.minCharConfidence = minCharConfidence;
+        float minX = points[0];
+        float minY = points[1];
+        float sumX = 0;
+        float sumY = 0;
+        for (int i = 0; i < 8; i += 2) {
+            minX = Math.min(minX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            sumX += points[i];
+            sumY += points[i + 1];
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.centerX = sumX / 4;
+        this.centerY = sumY / 4;
+    }
+
+    /**
+     * 仅检测出的文字框
+     */
+    public static TextBox detected(float[] points) {
+        return new TextBox(points, null, 0, 0);
+    }
+
+    /**
+     * 使用识别结果创建新的文字框
+     */
+    public TextBox withText(RecognizedText recognized) {
+        return new TextBox(points, recognized.getText(), recognized.getConfidence(), recognized.minCharConfidence());
+    }
+
+    /**
+     * 第index个点的x坐标（0 lt, 1 rt, 2 rb, 3 lb）
+     */
+    public float x(int index) {
+        return points[index * 2];
+    }
+
+    /**
+     * 第index个点的y坐标（0 lt, 1 rt, 2 rb, 3 lb）
+     */
+    public float y(int index) {
+        return points[index * 2 + 1];
+    }
+
+    /**
+     * 坐标拷贝到目标数组
+     */
+    public void copyPoints(float[] dest, int offset) {
+        System.arraycopy(points, 0, dest, offset, 8);
+    }
+
+    /**
+     * 坐标副本
+     */
+    public float[] copyPoints() {
+        return points.clone();
+    }
+
+    /**
+     * 从上到下、从左到右
+     */
+    @Override
+    public int compareTo(TextBox o) {
+        int cmp = Float.compare(minY, o.minY);
+        return cmp != 0 ? cmp : Float.compare(minX, o.minX);
+    }
+}
@@ -28,5 +28,13 @@ public class PdfKeywordPos {
      * y坐标
      */
     private Float pageY;
+    /**
+     * 关键词第一个字形的坐标 x, y, width, height（按图片识别时为空）
+     */
+    private float[] startBox;
+    /**
+     * 关键词最后一个字形的坐标 x, y, width, height（按图片识别时为空）
+     */
+    private float[] endBox;
 
 }
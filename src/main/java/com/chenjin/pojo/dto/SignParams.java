@@ -42,7 +42,7 @@ public class SignParams implements Serializable {
      */
     private String keyword;
     /**
-     * 关键词出现多次的时候是否签多个地方（0-否/1-是，null默认为否且取最后一个，为否时出现多次进行报错）
+     * 关键词出现多次的时候是否签多个地方（0-否/1-是/2-只签第一个，null默认为否且取最后一个，为否时出现多次进行报错）
      */
     private Integer multiPos;
     /**
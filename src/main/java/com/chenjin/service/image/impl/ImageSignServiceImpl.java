@@ -235,11 +235,18 @@ public class ImageSignServiceImpl implements ImageSignService {
             if (StrUtil.isEmpty(signParams.getKeyword())) {
                 throw new SignException("关键词不能为空，请检查");
             }
+            // 按命中方式查找（与pdf关键词签章一致），确定结果后即停止识别
+            SignConstants.KEYWORD_HIT_MODE hitMode = SignConstants.KEYWORD_HIT_MODE.of(signParams.getMultiPos());
             for (int i = 0; i < imgOsArr.length; i++) {
                 List<TextPos> textPos =
-                        ocrService.recognizeSegmentText(new ByteArrayInputStream(imgOsArr[i].toByteArray()), signParams.getKeyword());
+                        ocrService.locateKeyword(new ByteArrayInputStream(imgOsArr[i].toByteArray()), signParams.getKeyword(),
+                                hitMode);
+                // 每张图片都需要包含关键词
                 if (CollUtil.isEmpty(textPos)) {
-                    continue;
+                    throw new SignException("没有识别到指定关键词信息，请检查");
+                }
+                if (SignConstants.KEYWORD_HIT_MODE.UNIQUE == hitMode && textPos.size() != 1) {
+                    throw new SignException("存在多个关键词，请检查");
                 }
                 // 获取长宽信息
                 SignPair<Float, Float> imgWH = ImageUtils.calcWH(new ByteArrayInputStream(imgOsArr[i].toByteArray()));
@@ -1,5 +1,6 @@
 package com.chenjin.service.ocr;
 
+import com.chenjin.constant.SignConstants;
 import com.chenjin.pojo.bo.TextPos;
 
 import java.io.ByteArrayOutputStream;
@@ -27,4 +28,13 @@ public interface OcrService {
      */
     List<TextPos> recognizeSegmentText(InputStream imgIs, String text);
 
+    /**
+     * 查找关键词坐标（左下角开始），只识别可能是关键词的文字框，结果确定后立即结束
+     * @param imgIs 图片流数据
+     * @param keyword 关键词
+     * @param hitMode 命中方式（LAST最多返回1个，UNIQUE最多返回2个）
+     * @return 关键词坐标，没有命中时返回空列表
+     */
+    List<TextPos> locateKeyword(InputStream imgIs, String keyword, SignConstants.KEYWORD_HIT_MODE hitMode);
+
 }
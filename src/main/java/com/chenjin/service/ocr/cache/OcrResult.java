@@ -0,0 +1,94 @@
+package com.chenjin.service.ocr.cache;
+
+import com.chenjin.pojo.bo.TextBox;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存的ocr识别结果（只保存基本类型数据，不持有NDArray）
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 14:30
+ **/
+@Getter
+public class OcrResult {
+
+    /**
+     * 文字框坐标，每8个值为一个文字框 lt, rt, rb, lb (x, y)
+     */
+    private final float[] boxes;
+
+    /**
+     * 文字框对应的文字
+     */
+    private final String[] texts;
+
+    /**
+     * 文字识别置信度
+     */
+    private final float[] confidences;
+
+    /**
+     * 文字框中最低的字符概率
+     */
+    private final float[] minCharConfidences;
+
+    public OcrResult(float[] boxes, String[] texts, float[] confidences, float[] minCharConfidences) {
+        if (boxes.length != texts.length * 8 || confidences.length != texts.length
+                || minCharConfidences.length != texts.length) {
+            throw new IllegalArgumentException("文字框坐标与文字数量不一致");
+        }
+        this.boxes = boxes;
+        this.texts = texts;
+        this.confidences = confidences;
+        this.minCharConfidences = minCharConfidences;
+    }
+
+    /**
+     * 由识别出的文字框创建
+     */
+    public static OcrResult of(List<TextBox> textBoxes) {
+        int size = textBoxes.size();
+        float[] boxes = new float[size * 8];
+        String[] texts = new String[size];
+        float[] confidences = new float[size];
+        float[] minCharConfidences = new float[size];
+        for (int i = 0; i < size; i++) {
+            TextBox textBox = textBoxes.get(i);
+            textBox.copyPoints(boxes, i * 8);
+            texts[i] = textBox.getText();
+            confidences[i] = textBox.getConfidence();
+            minCharConfidences[i] = textBox.getMinCharConfidence();
+        }
+        return new OcrResult(boxes, texts, confidences, minCharConfidences);
+    }
+
+    /**
+     * 转换为文字框
+     */
+    public List<TextBox> toTextBoxes() {
+        List<TextBox> textBoxes = new ArrayList<>(texts.length);
+        for (int i = 0; i < texts.length; i++) {
+            textBoxes.add(new TextBox(box(i), texts[i], confidences[i], minCharConfidences[i]));
+        }
+        return textBoxes;
+    }
+
+    /**
+     * 文字框数量
+     */
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * 第index个文字框的坐标
+     */
+    public float[] box(int index) {
+        float[] box = new float[8];
+        System.arraycopy(boxes, index * 8, box, 0, 8);
+        return box;
+    }
+}
@@ -0,0 +1,313 @@
+package com.chenjin.service.ocr.cache;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * ocr识别结果缓存
+ * key为图片内容的SHA-256，分为内存（caffeine）和本地磁盘两级，磁盘目录按模型版本划分，模型变化后旧结果自动失效
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 14:30
+ **/
+@Slf4j
+public class OcrResultCache {
+
+    /**
+     * 磁盘文件格式标识（格式变化时修改，旧文件读取失败后自动删除）
+     */
+    private static final int FILE_MAGIC = 0x4F435233;
+
+    private static final String FILE_SUFFIX = ".ocr";
+
+    /**
+     * 模型版本目录名称格式（模型摘要的前16位），清理旧版本时只删除符合该格式的目录
+     */
+    private static final Pattern VERSION_DIR = Pattern.compile("[0-9a-f]{16}");
+
+    /**
+     * 每写入多少个磁盘文件检查一次磁盘容量
+     */
+    private static final int PRUNE_INTERVAL = 64;
+
+    private final String modelVersion;
+
+    private final Cache<String, OcrResult> memory;
+
+    /**
+     * 当前模型版本的磁盘缓存目录（为空时不使用磁盘缓存）
+     */
+    private final Path diskDir;
+
+    private final int diskMaxEntries;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong diskWrites = new AtomicLong();
+
+    /**
+     * 构造器
+     *
+     * @param modelVersion      模型版本（模型文件内容摘要）
+     * @param maximumSize       内存中最多缓存的图片数量
+     * @param expireAfterAccess 内存缓存访问过期时间
+     * @param diskDir           磁盘缓存根目录（为空时不使用磁盘缓存）
+     * @param diskMaxEntries    磁盘中最多缓存的图片数量
+     */
+    public OcrResultCache(String modelVersion, long maximumSize, Duration expireAfterAccess,
+                          Path diskDir, int diskMaxEntries) {
+        this.modelVersion = modelVersion;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        this.diskMaxEntries = diskMaxEntries;
+        this.diskDir = null == diskDir ? null : initDiskDir(diskDir);
+        log.info("ocr结果缓存初始化完成，模型版本：{}，磁盘目录：{}", modelVersion, this.diskDir);
+    }
+
+    /**
+     * 计算图片的缓存key
+     *
+     * @param imgBytes 图片数据
+     */
+    public String key(byte[] imgBytes) {
+        return DigestUtil.sha256Hex(imgBytes);
+    }
+
+    /**
+     * 获取缓存的识别结果，内存没有时读取磁盘并回填内存
+     *
+     * @param key 缓存key
+     * @return 识别结果，没有缓存时返回空
+     */
+    public OcrResult get(String key) {
+        OcrResult result = memory.getIfPresent(key);
+        if (null != result) {
+            memoryHits.incrementAndGet();
+            return result;
+        }
+        result = readDisk(key);
+        if (null != result) {
+            diskHits.incrementAndGet();
+            memory.put(key, result);
+            return result;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 保存识别结果
+     *
+     * @param key    缓存key
+     * @param result 识别结果
+     */
+    public void put(String key, OcrResult result) {
+        memory.put(key, result);
+        writeDisk(key, result);
+    }
+
+    /**
+     * 缓存使用情况
+     */
+    public Stats stats() {
+        return Stats.builder()
+                .modelVersion(modelVersion)
+                .memorySize(memory.estimatedSize())
+                .memoryHits(memoryHits.get())
+                .diskHits(diskHits.get())
+                .misses(misses.get())
+                .evictions(memory.stats().evictionCount())
+                .diskEnabled(null != diskDir)
+                .build();
+    }
+
+    /**
+     * 初始化当前模型版本的磁盘目录，并删除其他模型版本的缓存
+     * 缓存根目录可能配置为共用目录，只删除名称为模型版本格式且只包含缓存文件的目录
+     */
+    private Path initDiskDir(Path root) {
+        Path versionDir = root.resolve(modelVersion);
+        try {
+            Files.createDirectories(versionDir);
+            try (Stream<Path> dirs = Files.list(root)) {
+                dirs.filter(dir -> !dir.equals(versionDir) && isVersionDir(dir))
+                        .forEach(dir -> {
+                            log.info("模型版本变化，删除旧的ocr结果缓存：{}", dir);
+                            FileUtil.del(dir);
+                        });
+            }
+            return versionDir;
+        } catch (IOException e) {
+            log.warn("ocr结果磁盘缓存目录初始化失败，只使用内存缓存：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 是否为其他模型版本的缓存目录
+     */
+    private boolean isVersionDir(Path dir) {
+        if (!Files.isDirectory(dir) || !VERSION_DIR.matcher(dir.getFileName().toString()).matches()) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.allMatch(file -> Files.isRegularFile(file) && (file.getFileName().toString().endsWith(FILE_SUFFIX)
+                    || file.getFileName().toString().endsWith(".tmp")));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path diskFile(String key) {
+        return diskDir.resolve(key + FILE_SUFFIX);
+    }
+
+    /**
+     * 读取磁盘缓存，文件损坏时删除
+     */
+    private OcrResult readDisk(String key) {
+        if (null == diskDir) {
+            return null;
+        }
+        Path file = diskFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("文件格式错误");
+            }
+            int size = in.readInt();
+            float[] boxes = new float[size * 8];
+            String[] texts = new String[size];
+            float[] confidences = new float[size];
+            float[] minCharConfidences = new float[size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < 8; j++) {
+                    boxes[i * 8 + j] = in.readFloat();
+                }
+                texts[i] = in.readUTF();
+                confidences[i] = in.readFloat();
+                minCharConfidences[i] = in.readFloat();
+            }
+            return new OcrResult(boxes, texts, confidences, minCharConfidences);
+        } catch (IOException e) {
+            log.warn("读取ocr结果磁盘缓存失败：{}，{}", file, e.getMessage());
+            FileUtil.del(file);
+            return null;
+        }
+    }
+
+    /**
+     * 写入磁盘缓存（先写临时文件再移动，避免读到写了一半的文件）
+     */
+    private void writeDisk(String key, OcrResult result) {
+        if (null == diskDir) {
+            return;
+        }
+        Path file = diskFile(key);
+        Path tmpFile = diskDir.resolve(key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(result.size());
+                float[] boxes = result.getBoxes();
+                String[] texts = result.getTexts();
+                float[] confidences = result.getConfidences();
+                float[] minCharConfidences = result.getMinCharConfidences();
+                for (int i = 0; i < texts.length; i++) {
+                    for (int j = 0; j < 8; j++) {
+                        out.writeFloat(boxes[i * 8 + j]);
+                    }
+                    out.writeUTF(texts[i]);
+                    out.writeFloat(confidences[i]);
+                    out.writeFloat(minCharConfidences[i]);
+                }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入ocr结果磁盘缓存失败：{}，{}", file, e.getMessage());
+            FileUtil.del(tmpFile);
+            return;
+        }
+        if (diskWrites.incrementAndGet() % PRUNE_INTERVAL == 0) {
+            pruneDisk();
+        }
+    }
+
+    /**
+     * 磁盘缓存超过上限时，按最后修改时间删除最旧的文件
+     */
+    private void pruneDisk() {
+        try (Stream<Path> files = Files.list(diskDir)) {
+            Path[] cached = files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .toArray(Path[]::new);
+            int overflow = cached.length - diskMaxEntries;
+            if (overflow <= 0) {
+                return;
+            }
+            Stream.of(cached)
+                    .sorted(Comparator.comparingLong(file -> file.toFile().lastModified()))
+                    .limit(overflow)
+                    .forEach(FileUtil::del);
+        } catch (IOException e) {
+            log.warn("清理ocr结果磁盘缓存失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存使用情况
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        /**
+         * 模型版本
+         */
+        private String modelVersion;
+        /**
+         * 内存中的缓存数量
+         */
+        private long memorySize;
+        /**
+         * 内存命中次数
+         */
+        private long memoryHits;
+        /**
+         * 磁盘命中次数
+         */
+        private long diskHits;
+        /**
+         * 未命中次数
+         */
+        private long misses;
+        /**
+         * 内存淘汰次数
+         */
+        private long evictions;
+        /**
+         * 是否开启磁盘缓存
+         */
+        private boolean diskEnabled;
+    }
+}
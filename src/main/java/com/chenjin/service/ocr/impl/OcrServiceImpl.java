@@ -1,20 +1,23 @@
 package com.chenjin.service.ocr.impl;
 
 import ai.djl.modality.cv.Image;
-import ai.djl.ndarray.NDArray;
 import ai.djl.opencv.OpenCVImageFactory;
 import ai.djl.translate.TranslateException;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.IoUtil;
+import com.chenjin.constant.SignConstants;
 import com.chenjin.exception.SignException;
-import com.chenjin.pojo.bo.RotatedBox;
 import com.chenjin.pojo.bo.SignPair;
+import com.chenjin.pojo.bo.TextBox;
 import com.chenjin.pojo.bo.TextPos;
 import com.chenjin.service.ocr.OcrService;
+import com.chenjin.service.ocr.cache.OcrResult;
+import com.chenjin.service.ocr.cache.OcrResultCache;
 import com.chenjin.service.ocr.model.OcrV4Recognition;
 import com.chenjin.util.ImageUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
@@ -23,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -36,20 +40,27 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OcrServiceImpl implements OcrService {
 
+    /**
+     * 与行首文字框y坐标的差值小于该值时认为是同一行
+     */
+    private static final float SAME_LINE_DISTANCE = 20f;
+
     private final OcrV4Recognition recognition;
 
+    private final ObjectProvider<OcrResultCache> ocrResultCache;
+
     @Override
     public String recognizeFullText(InputStream imgIs) {
         ByteArrayOutputStream tmpImgOs = new ByteArrayOutputStream();
         IoUtil.copy(imgIs, tmpImgOs);
-        List<RotatedBox> imgTexts = convertImgToText(tmpImgOs);
+        List<TextBox> imgTexts = convertImgToText(tmpImgOs);
         // 排序
-        List<List<RotatedBox>> sortedBoxList = sortRotatedBox(imgTexts);
+        List<List<TextBox>> sortedBoxList = sortTextBoxes(imgTexts);
         // 拼接字符串
         StringBuilder fullText = new StringBuilder();
-        for (List<RotatedBox> rotatedBoxes : sortedBoxList) {
-            for (RotatedBox rotatedBox : rotatedBoxes) {
-                String text = rotatedBox.getText();
+        for (List<TextBox> textBoxes : sortedBoxList) {
+            for (TextBox textBox : textBoxes) {
+                String text = textBox.getText();
                 if (text.trim().isEmpty())
                     continue;
                 fullText.append(text).append("\t");
@@ -63,14 +74,12 @@ public class OcrServiceImpl implements OcrService {
     public List<TextPos> recognizeSegmentText(InputStream imgIs, String text) {
         ByteArrayOutputStream tmpImgOs = new ByteArrayOutputStream();
         IoUtil.copy(imgIs, tmpImgOs);
-        List<RotatedBox> imgTexts = convertImgToText(tmpImgOs);
+        List<TextBox> imgTexts = convertImgToText(tmpImgOs);
         List<TextPos> textPosList = new ArrayList<>();
-        for (RotatedBox imgText : imgTexts) {
+        for (TextBox imgText : imgTexts) {
             if (imgText.getText().equals(text)) {
-                NDArray posArr = imgText.getBox();
-                float[] floatArray = posArr.toFloatArray();
-                float originalX = floatArray[4];
-                float originalY = floatArray[5];
+                float originalX = imgText.x(2);
+                float originalY = imgText.y(2);
                 TextPos textPos = TextPos.builder()
                         .text(imgText.getText())
                         .xPos(originalX)
@@ -94,24 +103,76 @@ public class OcrServiceImpl implements OcrService {
         }
     }
 
+    @Override
+    public List<TextPos> locateKeyword(InputStream imgIs, String keyword, SignConstants.KEYWORD_HIT_MODE hitMode) {
+        ByteArrayOutputStream tmpImgOs = new ByteArrayOutputStream();
+        IoUtil.copy(imgIs, tmpImgOs);
+        Image image = readImage(tmpImgOs);
+        List<TextBox> hits;
+        OcrResultCache cache = ocrResultCache.getIfAvailable();
+        try {
+            // 已缓存整张图片的识别结果时直接查找，否则只识别候选文字框（结果不完整，不写入缓存）
+            OcrResult cached = null == cache ? null : cache.get(cache.key(tmpImgOs.toByteArray()));
+            if (null != cached) {
+                hits = matchKeyword(cached.toTextBoxes(), keyword, hitMode);
+            } else {
+                hits = recognition.predictKeyword(image, keyword, hitMode);
+            }
+        } catch (TranslateException e) {
+            log.error("图片关键词识别失败：", e);
+            throw new SignException("图片识别失败：" + e.getMessage());
+        }
+        // 转换坐标（左下角开始）
+        int height = image.getHeight();
+        List<TextPos> textPosList = new ArrayList<>(hits.size());
+        for (TextBox hit : hits) {
+            textPosList.add(TextPos.builder()
+                    .text(hit.getText())
+                    .xPos(hit.x(2))
+                    .YPos(Math.abs(height - hit.y(2)))
+                    .build());
+        }
+        return textPosList;
+    }
+
     /**
-     * 获取图片中文字信息（分割的文字框）
+     * 读取图片（只支持jpg、png）
      */
-    private List<RotatedBox> convertImgToText(ByteArrayOutputStream imgOs) {
+    private Image readImage(ByteArrayOutputStream imgOs) {
         boolean verified = ImageUtils.isJpgOrPng(new ByteArrayInputStream(imgOs.toByteArray()));
         if (!verified) {
             throw new SignException("非法图片格式，请检查");
         }
         try {
-            Image image = OpenCVImageFactory.getInstance().fromInputStream(new ByteArrayInputStream(imgOs.toByteArray()));
-            // 识别信息
-            List<RotatedBox> detections = recognition.predict(image);
+            return OpenCVImageFactory.getInstance().fromInputStream(new ByteArrayInputStream(imgOs.toByteArray()));
+        } catch (IOException e) {
+            throw new SignException("读取图片失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取图片中文字信息（分割的文字框）
+     */
+    private List<TextBox> convertImgToText(ByteArrayOutputStream imgOs) {
+        Image image = readImage(imgOs);
+        try {
+            // 识别信息（优先使用缓存）
+            OcrResultCache cache = ocrResultCache.getIfAvailable();
+            String cacheKey = null == cache ? null : cache.key(imgOs.toByteArray());
+            OcrResult cached = null == cache ? null : cache.get(cacheKey);
+            List<TextBox> detections;
+            if (null != cached) {
+                detections = cached.toTextBoxes();
+            } else {
+                detections = recognition.predict(image);
+                if (null != cache) {
+                    cache.put(cacheKey, OcrResult.of(detections));
+                }
+            }
             if (CollUtil.isEmpty(detections)) {
                 throw new SignException("识别失败，请确认图片是否正确后重试");
             }
             return detections;
-        } catch (IOException e) {
-            throw new SignException("读取图片失败：" + e.getMessage());
         } catch (TranslateException e) {
             log.error("图片识别失败：", e);
             throw new SignException("图片识别失败：" + e.getMessage());
@@ -119,37 +180,41 @@ public class OcrServiceImpl implements OcrService {
     }
 
     /**
-     * 对识别的文字框进行排序（从上到下，从左到右）
+     * 在整张图片的识别结果中按命中方式查找关键词
+     */
+    private List<TextBox> matchKeyword(List<TextBox> detections, String keyword, SignConstants.KEYWORD_HIT_MODE hitMode) {
+        List<TextBox> hits = new ArrayList<>();
+        for (TextBox textBox : detections) {
+            if (recognition.matchesKeyword(textBox, keyword)) {
+                hits.add(textBox);
+            }
+        }
+        hits.sort(OcrV4Recognition.keywordOrder(hitMode));
+        return hits.subList(0, Math.min(hits.size(), OcrV4Recognition.maxKeywordHits(hitMode)));
+    }
+
+    /**
+     * 对识别的文字框进行分行排序（从上到下，从左到右）
      */
-    private List<List<RotatedBox>> sortRotatedBox(List<RotatedBox> boxes) {
+    private List<List<TextBox>> sortTextBoxes(List<TextBox> boxes) {
         // 先按照y进行排序
-        Collections.sort(boxes);
-        // 按照x进行排序
-        List<List<RotatedBox>> lines = new ArrayList<>();
-        List<RotatedBox> line = new ArrayList<>();
-        RotatedBox firstBox = new RotatedBox(boxes.get(0).getBox(), boxes.get(0).getText());
-        line.add(firstBox);
-        lines.add(line);
-        for (int i = 1; i < boxes.size(); i++) {
-            RotatedBox tmpBox = new RotatedBox(boxes.get(i).getBox(), boxes.get(i).getText());
-            float y1 = firstBox.getBox().toFloatArray()[1];
-            float y2 = tmpBox.getBox().toFloatArray()[1];
-            float dis = Math.abs(y2 - y1);
-            if (dis < 20) { // 认为是同 1 行  - Considered to be in the same line
-                line.add(tmpBox);
-            } else { // 换行 - Line break
-                firstBox = tmpBox;
-                line.sort((o1, o2) -> {
-                    NDArray leftBox = o1.getBox();
-                    NDArray rightBox = o2.getBox();
-                    float leftX = leftBox.toFloatArray()[0];
-                    float rightX = rightBox.toFloatArray()[0];
-                    return Float.compare(leftX, rightX);
-                });
+        List<TextBox> sorted = new ArrayList<>(boxes);
+        Collections.sort(sorted);
+        // 与行首的y相差较小的认为是同一行
+        List<List<TextBox>> lines = new ArrayList<>();
+        List<TextBox> line = null;
+        float lineY = 0;
+        for (TextBox box : sorted) {
+            if (null == line || Math.abs(box.getMinY() - lineY) >= SAME_LINE_DISTANCE) {
                 line = new ArrayList<>();
-                line.add(firstBox);
                 lines.add(line);
+                lineY = box.getMinY();
             }
+            line.add(box);
+        }
+        // 每一行按照x进行排序
+        for (List<TextBox> textBoxes : lines) {
+            textBoxes.sort(Comparator.comparingDouble(TextBox::getMinX));
         }
         return lines;
     }
@@ -0,0 +1,175 @@
+package com.chenjin.service.ocr.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 空白页判断
+ * 在渲染出的灰度图上统计墨迹占比，墨迹很少的页面（分隔页、双面扫描的空白背面等）不再进行ocr；
+ * 开启文字行判断时，墨迹不多且按行投影没有文字行形状的页面（只有印章、线框的页面等）也不再进行ocr
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 18:40
+ **/
+public class BlankPageDetector {
+
+    /**
+     * 忽略的页边比例（扫描件边缘常有黑边、装订孔）
+     */
+    private static final float MARGIN_RATIO = 0.03f;
+
+    /**
+     * 按列分为几个竖条分别做行投影（倾斜的扫描件整行投影时相邻文字行会连成一片）
+     */
+    private static final int STRIPS = 4;
+
+    /**
+     * 竖条的一行中墨迹像素占比超过该值时认为该行有内容（表格竖线等细线不会达到）
+     */
+    private static final float ROW_INK_RATIO = 0.01f;
+
+    /**
+     * 文字行高度范围（相对页面高度），连续有内容的行的高度在范围内时认为是文字行
+     */
+    private static final float MIN_LINE_HEIGHT_RATIO = 0.001f;
+
+    private static final float MAX_LINE_HEIGHT_RATIO = 0.08f;
+
+    /**
+     * 墨迹占比超过该值时（深色、泛黄的纸张，整页图片）行投影连成一片，无法判断是否有文字，仍进行ocr
+     */
+    private static final float MAX_LINE_CHECK_INK_RATIO = 0.3f;
+
+    /**
+     * 灰度值低于该值的像素视为墨迹
+     */
+    private final int inkThreshold;
+
+    /**
+     * 墨迹像素占比低于该值时视为空白页
+     */
+    private final float minInkRatio;
+
+    /**
+     * 是否按文字行形状判断
+     */
+    private final boolean lineCheck;
+
+    private final AtomicLong checkedPages = new AtomicLong();
+
+    private final AtomicLong skippedPages = new AtomicLong();
+
+    public BlankPageDetector(int inkThreshold, float minInkRatio, boolean lineCheck) {
+        this.inkThreshold = inkThreshold;
+        this.minInkRatio = minInkRatio;
+        this.lineCheck = lineCheck;
+    }
+
+    /**
+     * 页面是否没有文字内容
+     *
+     * @param image 渲染出的页面图片
+     */
+    public boolean isBlank(BufferedImage image) {
+        checkedPages.incrementAndGet();
+        BufferedImage gray = toGray(image);
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        int x0 = (int) (width * MARGIN_RATIO);
+        int x1 = width - x0;
+        int y0 = (int) (height * MARGIN_RATIO);
+        int y1 = height - y0;
+        int stripWidth = Math.max(1, (x1 - x0) / STRIPS);
+        int rowInkMin = Math.max(1, (int) (stripWidth * ROW_INK_RATIO));
+        int minLineHeight = Math.max(1, (int) (height * MIN_LINE_HEIGHT_RATIO));
+        int maxLineHeight = Math.max(minLineHeight, (int) (height * MAX_LINE_HEIGHT_RATIO));
+
+        long ink = 0;
+        int lines = 0;
+        int[] bands = new int[STRIPS];
+        for (int y = y0; y < y1; y++) {
+            int rowStart = y * width;
+            for (int strip = 0; strip < STRIPS; strip++) {
+                int begin = x0 + strip * stripWidth;
+                int end = strip == STRIPS - 1 ? x1 : begin + stripWidth;
+                int rowInk = 0;
+                for (int i = rowStart + begin, last = rowStart + end; i < last; i++) {
+                    if ((pixels[i] & 0xFF) < inkThreshold) {
+                        rowInk++;
+                    }
+                }
+                ink += rowInk;
+                // 按行投影：连续有内容的行组成一个条带，条带结束时判断高度是否像文字行
+                if (rowInk >= rowInkMin) {
+                    bands[strip]++;
+                } else {
+                    if (bands[strip] >= minLineHeight && bands[strip] <= maxLineHeight) {
+                        lines++;
+                    }
+                    bands[strip] = 0;
+                }
+            }
+        }
+        for (int band : bands) {
+            if (band >= minLineHeight && band <= maxLineHeight) {
+                lines++;
+            }
+        }
+        long area = (long) (x1 - x0) * (y1 - y0);
+        boolean blank = area <= 0 || ink < area * minInkRatio
+                || (lineCheck && lines == 0 && ink <= area * MAX_LINE_CHECK_INK_RATIO);
+        if (blank) {
+            skippedPages.incrementAndGet();
+        }
+        return blank;
+    }
+
+    /**
+     * 转换为单字节灰度图（pdf按灰度渲染时不需要转换）
+     */
+    private BufferedImage toGray(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+
+    /**
+     * 空白页判断情况
+     */
+    public Stats stats() {
+        return Stats.builder()
+                .checkedPages(checkedPages.get())
+                .skippedPages(skippedPages.get())
+                .build();
+    }
+
+    /**
+     * 空白页判断情况
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        /**
+         * 累计判断的页数
+         */
+        private long checkedPages;
+        /**
+         * 累计跳过的页数
+         */
+        private long skippedPages;
+    }
+}
@@ -0,0 +1,352 @@
+package com.chenjin.service.ocr.model;
+
+import ai.djl.inference.Predictor;
+import ai.djl.modality.cv.Image;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.NoopTranslator;
+import ai.djl.translate.TranslateException;
+import com.chenjin.exception.SignException;
+import com.chenjin.service.ocr.translator.DetGeometry;
+import com.chenjin.service.ocr.translator.OCRDetectionTranslator;
+import com.chenjin.util.OpenCVUtils;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.FloatBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文字检测跨请求合批调度器
+ * 并发请求的检测输入在一个很短的时间窗口内合并为一个批次，补齐到同一尺寸后执行一次前向推理，再按请求拆分结果
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 11:02
+ **/
+@Slf4j
+public class DetectionBatchScheduler implements AutoCloseable {
+
+    private final ZooModel<Image, NDList> detModel;
+
+    private final OCRDetectionTranslator translator;
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final long waitTimeoutNanos;
+
+    private final BlockingQueue<DetectionTask> queue = new LinkedBlockingQueue<>();
+
+    private final ExecutorService workers;
+
+    private volatile boolean running = true;
+
+    /**
+     * 正在执行推理的工作线程数量
+     */
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong imageCount = new AtomicLong();
+
+    private final AtomicLong maxBatch = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * 构造器
+     *
+     * @param detModel     检测模型
+     * @param translator   检测前后处理
+     * @param workerCount  工作线程数量（每个线程持有一个推理器）
+     * @param window       合批等待窗口
+     * @param maxBatchSize 单批次最多图片数量
+     * @param waitTimeout  等待检测结果的最长时间（排队及推理）
+     */
+    public DetectionBatchScheduler(ZooModel<Image, NDList> detModel, OCRDetectionTranslator translator,
+                                   int workerCount, Duration window, int maxBatchSize, Duration waitTimeout) {
+        this.detModel = detModel;
+        this.translator = translator;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "ocr-det-batch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::workLoop);
+        }
+        log.info("文字检测合批调度器初始化完成，线程数：{}，合批窗口：{}ms，最大批次：{}",
+                workerCount, window.toMillis(), this.maxBatchSize);
+    }
+
+    /**
+     * 提交检测任务
+     *
+     * @param image 待检测图片
+     * @return 检测到的文字框
+     */
+    public CompletableFuture<NDList> submit(Image image) {
+        if (!running) {
+            throw new SignException("文字检测调度器已关闭");
+        }
+        DetectionTask task = new DetectionTask(image);
+        queue.offer(task);
+        return task.future;
+    }
+
+    /**
+     * 检测图片中的文字框（阻塞等待结果，超过等待时间抛出异常）
+     *
+     * @param image 待检测图片
+     * @return 检测到的文字框
+     */
+    public NDList detect(Image image) throws TranslateException {
+        CompletableFuture<NDList> future = submit(image);
+        try {
+            return future.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // 结束任务，尚未开始的任务不再进行推理
+            future.completeExceptionally(e);
+            timeoutCount.incrementAndGet();
+            throw new SignException("文字检测繁忙，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SignException("等待文字检测结果时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TranslateException translateException) {
+                throw translateException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TranslateException(cause);
+        }
+    }
+
+    /**
+     * 合批调度情况
+     */
+    public Stats stats() {
+        long batches = batchCount.get();
+        return Stats.builder()
+                .queueSize(queue.size())
+                .busyWorkers(busyWorkers.get())
+                .batchCount(batches)
+                .imageCount(imageCount.get())
+                .avgBatchSize(batches == 0 ? 0 : (double) imageCount.get() / batches)
+                .maxBatchSize(maxBatch.get())
+                .timeoutCount(timeoutCount.get())
+                .build();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdownNow();
+        DetectionTask task;
+        while ((task = queue.poll()) != null) {
+            task.future.completeExceptionally(new SignException("文字检测调度器已关闭"));
+        }
+    }
+
+    /**
+     * 工作线程：取出第一个任务后在窗口内继续收集任务，然后执行一次批量推理
+     */
+    private void workLoop() {
+        try (Predictor<NDList, NDList> predictor = detModel.newPredictor(new NoopTranslator())) {
+            while (running) {
+                List<DetectionTask> batch = new ArrayList<>(maxBatchSize);
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    // 只有其他线程也在推理（存在并发压力）时才等待合批，低负载下直接执行
+                    if (batch.size() < maxBatchSize && busyWorkers.get() > 0) {
+                        long deadline = System.nanoTime() + windowNanos;
+                        while (batch.size() < maxBatchSize) {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0) {
+                                break;
+                            }
+                            DetectionTask task = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                            if (null == task) {
+                                break;
+                            }
+                            batch.add(task);
+                            queue.drainTo(batch, maxBatchSize - batch.size());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    batch.forEach(task -> task.future.completeExceptionally(new SignException("文字检测调度器已关闭")));
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                busyWorkers.incrementAndGet();
+                try {
+                    runBatch(predictor, batch);
+                } catch (Throwable e) {
+                    // 包括OutOfMemoryError、UnsatisfiedLinkError等，结束该批次的任务后继续处理后面的批次
+                    log.error("批量文字检测失败：", e);
+                    // 已单独结束的任务不受影响
+                    batch.forEach(task -> task.future.completeExceptionally(e));
+                } finally {
+                    busyWorkers.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 执行一个批次：预处理并补齐尺寸 -> 前向推理 -> 按图片拆分后处理
+     * 单张图片预处理、后处理失败时只结束该图片的任务，只有前向推理失败时整个批次失败
+     */
+    private void runBatch(Predictor<NDList, NDList> predictor, List<DetectionTask> batch) throws TranslateException {
+        batchCount.incrementAndGet();
+        imageCount.addAndGet(batch.size());
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+        try (NDManager manager = detModel.getNDManager().newSubManager()) {
+            List<DetectionTask> tasks = new ArrayList<>(batch.size());
+            List<DetGeometry> geometries = new ArrayList<>(batch.size());
+            int maxHeight = 0;
+            int maxWidth = 0;
+            for (DetectionTask task : batch) {
+                // 等待超时的任务不再进行推理
+                if (task.future.isDone()) {
+                    continue;
+                }
+                try {
+                    DetGeometry geometry = translator.geometry(task.image);
+                    tasks.add(task);
+                    geometries.add(geometry);
+                    maxHeight = Math.max(maxHeight, geometry.getResizeHeight());
+                    maxWidth = Math.max(maxWidth, geometry.getResizeWidth());
+                } catch (Exception e) {
+                    fail(task, e);
+                }
+            }
+            int size = tasks.size();
+            if (size == 0) {
+                return;
+            }
+
+            // 每张图片直接预处理到批次数组中的对应位置，右下补零，拼接为 [N, 3, H, W]
+            int plane = maxHeight * maxWidth;
+            int length = size * 3 * plane;
+            float[] batchData = OpenCVUtils.inputBuffer(length);
+            Arrays.fill(batchData, 0, length, 0f);
+            for (int i = 0; i < size; i++) {
+                int offset = i * 3 * plane;
+                try {
+                    translator.writeInput(tasks.get(i).image, geometries.get(i), batchData, offset, maxWidth, plane);
+                } catch (Exception e) {
+                    // 失败的图片位置保持补零，仍参与推理但不做后处理
+                    Arrays.fill(batchData, offset, offset + 3 * plane, 0f);
+                    fail(tasks.get(i), e);
+                }
+            }
+            NDArray batchArray = manager.create(FloatBuffer.wrap(batchData, 0, length), new Shape(size, 3, maxHeight, maxWidth));
+
+            NDList output = predictor.predict(new NDList(batchArray));
+            // 概率图 [N, 1, H, W] 一次性拷贝为 N*H 行的Mat，再按图片取ROI去除补齐的部分
+            Mat preds = new Mat(size * maxHeight, maxWidth, CvType.CV_32F);
+            try {
+                preds.put(0, 0, output.get(0).toFloatArray());
+                for (int i = 0; i < size; i++) {
+                    DetectionTask task = tasks.get(i);
+                    if (task.future.isDone()) {
+                        continue;
+                    }
+                    DetGeometry geometry = geometries.get(i);
+                    Mat pred = preds.submat(i * maxHeight, i * maxHeight + geometry.getResizeHeight(),
+                            0, geometry.getResizeWidth());
+                    try {
+                        NDList boxes = translator.postprocess(manager, pred, geometry);
+                        task.future.complete(boxes);
+                    } catch (Exception e) {
+                        fail(task, e);
+                    } finally {
+                        pred.release();
+                    }
+                }
+            } finally {
+                preds.release();
+            }
+        }
+    }
+
+    /**
+     * 单个任务失败，不影响同一批次的其他任务
+     */
+    private void fail(DetectionTask task, Throwable e) {
+        log.warn("文字检测失败：{}", e.getMessage());
+        task.future.completeExceptionally(e);
+    }
+
+    /**
+     * 检测任务
+     */
+    private static class DetectionTask {
+
+        private final Image image;
+
+        private final CompletableFuture<NDList> future = new CompletableFuture<>();
+
+        private DetectionTask(Image image) {
+            this.image = image;
+        }
+    }
+
+    /**
+     * 合批调度情况
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        /**
+         * 排队中的图片数量
+         */
+        private int queueSize;
+        /**
+         * 正在推理的线程数量
+         */
+        private int busyWorkers;
+        /**
+         * 累计批次数量
+         */
+        private long batchCount;
+        /**
+         * 累计图片数量
+         */
+        private long imageCount;
+        /**
+         * 平均批次大小
+         */
+        private double avgBatchSize;
+        /**
+         * 最大批次大小
+         */
+        private long maxBatchSize;
+        /**
+         * 等待检测结果超时次数
+         */
+        private long timeoutCount;
+    }
+}
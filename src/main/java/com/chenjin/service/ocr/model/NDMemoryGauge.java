@@ -0,0 +1,124 @@
+package com.chenjin.service.ocr.model;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NDArray内存统计
+ * 每次推理都在根管理器下创建独立的子管理器，这里记录尚未关闭的子管理器，统计其中存活的NDArray及占用的native内存
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 15:20
+ **/
+public class NDMemoryGauge {
+
+    private final NDManager root;
+
+    /**
+     * 尚未关闭的请求级子管理器（关闭的在下次创建或统计时移除）
+     */
+    private final Set<NDManager> scopes = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong scopeCount = new AtomicLong();
+
+    public NDMemoryGauge(NDManager root) {
+        this.root = root;
+    }
+
+    /**
+     * 创建请求级子管理器，调用方负责关闭
+     */
+    public NDManager newScope() {
+        scopes.removeIf(scope -> !scope.isOpen());
+        NDManager scope = root.newSubManager();
+        scopes.add(scope);
+        scopeCount.incrementAndGet();
+        return scope;
+    }
+
+    /**
+     * 存活NDArray情况
+     */
+    public Stats stats() {
+        scopes.removeIf(scope -> !scope.isOpen());
+        // 根管理器的统计包含所有未关闭的子管理器，子管理器的部分单独统计后扣除，剩下的是直接挂在根管理器上的
+        long[] totalUsage = measure(root.getManagedArrays());
+        long scopeArrays = 0;
+        long scopeBytes = 0;
+        int openScopes = 0;
+        for (NDManager scope : scopes) {
+            if (!scope.isOpen()) {
+                continue;
+            }
+            long[] usage = measure(scope.getManagedArrays());
+            scopeArrays += usage[0];
+            scopeBytes += usage[1];
+            openScopes++;
+        }
+        // 两次统计之间可能有子管理器创建或关闭，结果取不小于子管理器的部分
+        long liveArrays = Math.max(totalUsage[0], scopeArrays);
+        long nativeBytes = Math.max(totalUsage[1], scopeBytes);
+        return Stats.builder()
+                .openScopes(openScopes)
+                .totalScopes(scopeCount.get())
+                .rootArrays(liveArrays - scopeArrays)
+                .liveArrays(liveArrays)
+                .nativeBytes(nativeBytes)
+                .build();
+    }
+
+    /**
+     * 统计NDArray数量及字节数
+     */
+    private long[] measure(Collection<NDArray> arrays) {
+        long count = 0;
+        long bytes = 0;
+        for (NDArray array : arrays) {
+            // 统计过程中其他线程可能正在释放NDArray
+            if (array.isReleased()) {
+                continue;
+            }
+            try {
+                bytes += array.getShape().size() * array.getDataType().getNumOfBytes();
+                count++;
+            } catch (IllegalStateException ignored) {
+            }
+        }
+        return new long[]{count, bytes};
+    }
+
+    /**
+     * 存活NDArray情况
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        /**
+         * 进行中的请求级子管理器数量
+         */
+        private int openScopes;
+        /**
+         * 累计创建的子管理器数量
+         */
+        private long totalScopes;
+        /**
+         * 直接挂在根管理器上的NDArray数量（正常情况下不应持续增长）
+         */
+        private long rootArrays;
+        /**
+         * 存活的NDArray数量
+         */
+        private long liveArrays;
+        /**
+         * 占用的native内存（字节）
+         */
+        private long nativeBytes;
+    }
+}
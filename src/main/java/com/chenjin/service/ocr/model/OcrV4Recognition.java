@@ -2,126 +2,405 @@ package com.chenjin.service.ocr.model;
 
 import ai.djl.inference.Predictor;
 import ai.djl.modality.cv.Image;
-import ai.djl.modality.cv.ImageFactory;
-import ai.djl.modality.cv.output.Point;
-import ai.djl.modality.cv.util.NDImageUtils;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
 import ai.djl.opencv.OpenCVImageFactory;
-import ai.djl.repository.zoo.Criteria;
-import ai.djl.training.util.ProgressBar;
 import ai.djl.translate.TranslateException;
-import com.chenjin.exception.SignException;
-import com.chenjin.pojo.bo.RotatedBox;
-import com.chenjin.service.ocr.translator.PpWordRecTranslator;
-import com.chenjin.util.NDArrayUtils;
-import com.chenjin.util.OpenCVUtils;
+import com.chenjin.constant.SignConstants;
+import com.chenjin.pojo.bo.RecognizedText;
+import com.chenjin.pojo.bo.TextBox;
+import com.chenjin.service.ocr.translator.WidthBuckets;
 import org.opencv.core.Mat;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.awt.image.BufferedImage;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.Paths;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 文字识别
  */
 public class OcrV4Recognition {
 
-    private final NDManager manager;
+    /**
+     * 关键词预筛选：单个字符宽高比的下限、上限，以及检测框外扩带来的额外宽高比
+     */
+    private static final float MIN_CHAR_RATIO = 0.25f;
+
+    private static final float MAX_CHAR_RATIO = 1.5f;
+
+    private static final float RATIO_PADDING = 2f;
+
+    /**
+     * 由粗到细查找关键词时，精检测区域在粗检测文字行四周外扩的比例（相对行高）
+     */
+    private static final float REGION_MARGIN = 0.5f;
+
+    /**
+     * 请求级内存管理器的创建及统计
+     */
+    private final NDMemoryGauge memoryGauge;
+
+    /**
+     * 文字检测推理器池（开启检测合批时为空，由合批调度器持有检测推理器）
+     */
+    private final PredictorPool<Image, NDList> detectorPool;
+
+    private final PredictorPool<Image, RecognizedText> recognizerPool;
+
+    /**
+     * 文字检测合批调度器（为空时直接使用检测推理器池）
+     */
+    private final DetectionBatchScheduler detectionScheduler;
 
-    private final Predictor<Image, NDList> detector;
+    /**
+     * 大图分块检测（为空时整图检测）
+     */
+    private final TiledDetection tiledDetection;
 
-    private final Predictor<Image, String> recognizer;
+    /**
+     * 识别输入宽度分桶
+     */
+    private final WidthBuckets widthBuckets;
 
-    public OcrV4Recognition(NDManager manager, Predictor<Image, NDList> detector, Predictor<Image, String> recognizer) {
-        this.manager = manager;
-        this.detector = detector;
-        this.recognizer = recognizer;
+    /**
+     * 单次批量识别的文字框数量
+     */
+    private final int batchSize;
+
+    /**
+     * 由粗到细查找关键词时粗检测的最长边（小于等于0时不开启）
+     */
+    private final int coarseSide;
+
+    /**
+     * 命中关键词要求的最低字符概率
+     */
+    private final float minCharConfidence;
+
+    public OcrV4Recognition(NDMemoryGauge memoryGauge, PredictorPool<Image, NDList> detectorPool,
+                            PredictorPool<Image, RecognizedText> recognizerPool, DetectionBatchScheduler detectionScheduler,
+                            TiledDetection tiledDetection, WidthBuckets widthBuckets, int batchSize, int coarseSide,
+                            float minCharConfidence) {
+        this.memoryGauge = memoryGauge;
+        this.detectorPool = detectorPool;
+        this.recognizerPool = recognizerPool;
+        this.detectionScheduler = detectionScheduler;
+        this.tiledDetection = tiledDetection;
+        this.widthBuckets = widthBuckets;
+        this.batchSize = Math.max(1, batchSize);
+        this.coarseSide = coarseSide;
+        this.minCharConfidence = minCharConfidence;
     }
 
 
     /**
      * 图像推理(先分割文字框，在识别文字框)
      */
-    public List<RotatedBox> predict(Image image) throws TranslateException {
-        NDList boxes = this.detector.predict(image);
-        // 交给 NDManager自动管理内存
-        boxes.attach(this.manager);
+    public List<TextBox> predict(Image image) throws TranslateException {
+        List<float[]> quads = detect(image);
+
+        Mat mat = (Mat) image.getWrappedImage();
+
+        // 先裁剪出所有文字框图片
+        List<Image> subImgs = new ArrayList<>(quads.size());
+        List<Mat> cvMats = new ArrayList<>(quads.size());
+        try (TextCropper cropper = new TextCropper(mat)) {
+            for (float[] quad : quads) {
+                Mat cvMat = cropper.crop(quad);
+                cvMats.add(cvMat);
+                subImgs.add(OpenCVImageFactory.getInstance().fromImage(cvMat));
+            }
+
+            // 批量识别
+            RecognizedText[] texts = recognizeBatch(subImgs);
 
-        List<RotatedBox> result = new ArrayList<>();
+            List<TextBox> result = new ArrayList<>(quads.size());
+            for (int i = 0; i < quads.size(); i++) {
+                result.add(TextBox.detected(quads.get(i)).withText(texts[i]));
+            }
+            return result;
+        } finally {
+            cvMats.forEach(Mat::release);
+        }
+    }
+
+    /**
+     * 关键词查找：只识别尺寸可能是该关键词的文字框，并按命中方式的顺序识别，结果确定后立即结束
+     *
+     * @param image   图片
+     * @param keyword 关键词
+     * @param hitMode 命中方式
+     * @return 命中关键词的文字框（LAST最多1个，UNIQUE最多2个，超过1个即说明不唯一）
+     */
+    public List<TextBox> predictKeyword(Image image, String keyword, SignConstants.KEYWORD_HIT_MODE hitMode) throws TranslateException {
+        // 按文字框宽高比和关键词字数预筛选
+        int charCount = keyword.codePointCount(0, keyword.length());
+        float minRatio = charCount * MIN_CHAR_RATIO;
+        float maxRatio = charCount * MAX_CHAR_RATIO + RATIO_PADDING;
+        if (this.coarseSide > 0 && Math.max(image.getWidth(), image.getHeight()) > this.coarseSide) {
+            return predictKeywordCoarseToFine(image, keyword, hitMode, minRatio, maxRatio);
+        }
+        List<TextBox> candidates = new ArrayList<>();
+        for (float[] quad : detect(image)) {
+            float ratio = TextCropper.textRatio(quad);
+            if (ratio >= minRatio && ratio <= maxRatio) {
+                candidates.add(TextBox.detected(quad));
+            }
+        }
+        candidates.sort(keywordOrder(hitMode));
+
+        List<TextBox> hits = new ArrayList<>();
+        Mat mat = (Mat) image.getWrappedImage();
+        try (TextCropper cropper = new TextCropper(mat)) {
+            recognizeKeyword(cropper, candidates, keyword, maxKeywordHits(hitMode), hits);
+        }
+        return hits;
+    }
 
+    /**
+     * 由粗到细的关键词查找
+     * 1. 粗检测：整页缩小到coarseSide后检测，得到候选文字行（文字行可能包含关键词以外的文字，只按宽高比下限筛选）
+     * 2. 精检测：按查找顺序，在原图上截取候选文字行附近的区域重新检测，只识别该区域中尺寸符合的文字框，结果确定后立即结束
+     */
+    private List<TextBox> predictKeywordCoarseToFine(Image image, String keyword, SignConstants.KEYWORD_HIT_MODE hitMode,
+                                                     float minRatio, float maxRatio) throws TranslateException {
         Mat mat = (Mat) image.getWrappedImage();
+        float scale = (float) this.coarseSide / Math.max(mat.cols(), mat.rows());
+        Mat coarse = new Mat();
+        List<float[]> lines;
+        try {
+            Imgproc.resize(mat, coarse, new Size(Math.max(1, Math.round(mat.cols() * scale)),
+                    Math.max(1, Math.round(mat.rows() * scale))), 0, 0, Imgproc.INTER_AREA);
+            lines = detectQuads(OpenCVImageFactory.getInstance().fromImage(coarse));
+        } finally {
+            coarse.release();
+        }
+        List<TextBox> regions = new ArrayList<>(lines.size());
+        for (float[] quad : lines) {
+            for (int i = 0; i < quad.length; i++) {
+                quad[i] /= scale;
+            }
+            if (TextCropper.textRatio(quad) >= minRatio) {
+                regions.add(TextBox.detected(quad));
+            }
+        }
+        Comparator<TextBox> order = keywordOrder(hitMode);
+        regions.sort(order);
+        int maxHits = maxKeywordHits(hitMode);
 
-        for (NDArray box : boxes) {
-            float[] pointsArr = box.toFloatArray();
-            float[] lt = java.util.Arrays.copyOfRange(pointsArr, 0, 2);
-            float[] rt = java.util.Arrays.copyOfRange(pointsArr, 2, 4);
-            float[] rb = java.util.Arrays.copyOfRange(pointsArr, 4, 6);
-            float[] lb = java.util.Arrays.copyOfRange(pointsArr, 6, 8);
-            int img_crop_width = (int) Math.max(distance(lt, rt), distance(rb, lb));
-            int img_crop_height = (int) Math.max(distance(lt, lb), distance(rt, rb));
-            List<Point> srcPoints = new ArrayList<>();
-            srcPoints.add(new Point(lt[0], lt[1]));
-            srcPoints.add(new Point(rt[0], rt[1]));
-            srcPoints.add(new Point(rb[0], rb[1]));
-            srcPoints.add(new Point(lb[0], lb[1]));
-            List<Point> dstPoints = new ArrayList<>();
-            dstPoints.add(new Point(0, 0));
-            dstPoints.add(new Point(img_crop_width, 0));
-            dstPoints.add(new Point(img_crop_width, img_crop_height));
-            dstPoints.add(new Point(0, img_crop_height));
-
-            Mat srcPoint2f = NDArrayUtils.toMat(srcPoints);
-            Mat dstPoint2f = NDArrayUtils.toMat(dstPoints);
-
-            Mat cvMat = OpenCVUtils.perspectiveTransform(mat, srcPoint2f, dstPoint2f);
-
-            Image subImg = OpenCVImageFactory.getInstance().fromImage(cvMat);
-
-            subImg = subImg.getSubImage(0, 0, img_crop_width, img_crop_height);
-            if (subImg.getHeight() * 1.0 / subImg.getWidth() > 1.5) {
-                subImg = rotateImg(this.manager, subImg);
+        List<TextBox> hits = new ArrayList<>();
+        // 已经精检测过的文字框外接矩形，相邻区域重叠部分的文字框只识别一次
+        List<float[]> visited = new ArrayList<>();
+        try (TextCropper cropper = new TextCropper(mat)) {
+            for (int r = 0; r < regions.size() && hits.size() < maxHits; r++) {
+                Rect rect = fineRegion(regions.get(r), mat.cols(), mat.rows());
+                Mat roi = mat.submat(rect);
+                List<float[]> quads;
+                try {
+                    quads = detectQuads(OpenCVImageFactory.getInstance().fromImage(roi));
+                } finally {
+                    roi.release();
+                }
+                List<TextBox> candidates = new ArrayList<>();
+                List<float[]> regionBounds = new ArrayList<>(quads.size());
+                for (float[] quad : quads) {
+                    for (int i = 0; i < quad.length; i += 2) {
+                        quad[i] += rect.x;
+                        quad[i + 1] += rect.y;
+                    }
+                    float[] bounds = bounds(quad);
+                    regionBounds.add(bounds);
+                    float ratio = TextCropper.textRatio(quad);
+                    if (ratio >= minRatio && ratio <= maxRatio && !covered(visited, bounds)) {
+                        candidates.add(TextBox.detected(quad));
+                    }
+                }
+                visited.addAll(regionBounds);
+                candidates.sort(order);
+                recognizeKeyword(cropper, candidates, keyword, maxHits, hits);
             }
+        }
+        return hits;
+    }
 
-            String name = this.recognizer.predict(subImg);
-            RotatedBox rotatedBox = new RotatedBox(box, name);
-            result.add(rotatedBox);
+    /**
+     * 精检测区域：粗检测文字行的外接矩形，四周外扩半个行高
+     */
+    private static Rect fineRegion(TextBox line, int width, int height) {
+        float[] bounds = bounds(line.copyPoints());
+        float margin = (bounds[3] - bounds[1]) * REGION_MARGIN;
+        int x0 = Math.max(0, (int) Math.floor(bounds[0] - margin));
+        int y0 = Math.max(0, (int) Math.floor(bounds[1] - margin));
+        int x1 = Math.min(width, (int) Math.ceil(bounds[2] + margin));
+        int y1 = Math.min(height, (int) Math.ceil(bounds[3] + margin));
+        return new Rect(x0, y0, Math.max(1, x1 - x0), Math.max(1, y1 - y0));
+    }
 
-            cvMat.release();
-            srcPoint2f.release();
-            dstPoint2f.release();
+    /**
+     * 文字框外接矩形 [minX, minY, maxX, maxY]
+     */
+    private static float[] bounds(float[] quad) {
+        float minX = quad[0], minY = quad[1], maxX = quad[0], maxY = quad[1];
+        for (int i = 2; i < 8; i += 2) {
+            minX = Math.min(minX, quad[i]);
+            maxX = Math.max(maxX, quad[i]);
+            minY = Math.min(minY, quad[i + 1]);
+            maxY = Math.max(maxY, quad[i + 1]);
+        }
+        return new float[]{minX, minY, maxX, maxY};
+    }
 
+    /**
+     * 文字框中心是否落在已检测过的文字框中
+     */
+    private static boolean covered(List<float[]> visited, float[] bounds) {
+        float centerX = (bounds[0] + bounds[2]) / 2;
+        float centerY = (bounds[1] + bounds[3]) / 2;
+        for (float[] other : visited) {
+            if (centerX >= other[0] && centerX <= other[2] && centerY >= other[1] && centerY <= other[3]) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return result;
+    /**
+     * 按顺序分批识别候选文字框，命中数量达到maxHits后结束
+     */
+    private void recognizeKeyword(TextCropper cropper, List<TextBox> candidates, String keyword, int maxHits,
+                                  List<TextBox> hits) throws TranslateException {
+        for (int begin = 0; begin < candidates.size() && hits.size() < maxHits; begin += batchSize) {
+            int end = Math.min(begin + batchSize, candidates.size());
+            List<Image> subImgs = new ArrayList<>(end - begin);
+            List<Mat> cvMats = new ArrayList<>(end - begin);
+            try {
+                for (int i = begin; i < end; i++) {
+                    Mat cvMat = cropper.crop(candidates.get(i).copyPoints());
+                    cvMats.add(cvMat);
+                    subImgs.add(OpenCVImageFactory.getInstance().fromImage(cvMat));
+                }
+                RecognizedText[] texts = recognizeBatch(subImgs);
+                for (int i = begin; i < end && hits.size() < maxHits; i++) {
+                    TextBox textBox = candidates.get(i).withText(texts[i - begin]);
+                    if (matchesKeyword(textBox, keyword)) {
+                        hits.add(textBox);
+                    }
+                }
+            } finally {
+                cvMats.forEach(Mat::release);
+            }
+        }
+    }
+
+    /**
+     * 文字框是否命中关键词：文字一致，且每个字符的概率都不低于下限
+     */
+    public boolean matchesKeyword(TextBox textBox, String keyword) {
+        return keyword.equals(textBox.getText()) && textBox.getMinCharConfidence() >= this.minCharConfidence;
+    }
+
+    /**
+     * 关键词文字框的查找顺序，最后一个：从下往上、从右往左；其他：从上往下、从左往右
+     */
+    public static Comparator<TextBox> keywordOrder(SignConstants.KEYWORD_HIT_MODE hitMode) {
+        Comparator<TextBox> readingOrder = Comparator.naturalOrder();
+        return SignConstants.KEYWORD_HIT_MODE.LAST == hitMode ? readingOrder.reversed() : readingOrder;
     }
 
-    private BufferedImage get_rotate_crop_image(Image image, NDArray box) {
-        return null;
+    /**
+     * 能够确定结果的命中数量，LAST、FIRST命中1个即可，UNIQUE命中2个即可说明不唯一
+     */
+    public static int maxKeywordHits(SignConstants.KEYWORD_HIT_MODE hitMode) {
+        return switch (hitMode) {
+            case LAST, FIRST -> 1;
+            case UNIQUE -> 2;
+            case ALL -> Integer.MAX_VALUE;
+        };
     }
 
     /**
-     * 欧式距离计算
+     * 检测文字框，大图开启分块时各分块并行检测后合并
+     *
+     * @return 文字框坐标 lt, rt, rb, lb (x, y)
      */
-    private float distance(float[] point1, float[] point2) {
-        float disX = point1[0] - point2[0];
-        float disY = point1[1] - point2[1];
-        return (float) Math.sqrt(disX * disX + disY * disY);
+    private List<float[]> detect(Image image) throws TranslateException {
+        if (null != this.tiledDetection && this.tiledDetection.shouldTile(image)) {
+            return this.tiledDetection.detect(image, this::detectQuads);
+        }
+        return detectQuads(image);
     }
 
     /**
-     * 图片旋转
+     * 检测单张图片的文字框（开启合批时交给调度器）
+     * 每次检测使用独立的子管理器，转换为坐标后释放所有NDArray
      */
-    private Image rotateImg(NDManager manager, Image image) {
-        NDArray rotated = NDImageUtils.rotate90(image.toNDArray(manager), 1);
-        return ImageFactory.getInstance().fromNDArray(rotated);
+    private List<float[]> detectQuads(Image image) throws TranslateException {
+        try (NDManager scope = this.memoryGauge.newScope()) {
+            NDList boxes = null != this.detectionScheduler
+                    ? this.detectionScheduler.detect(image)
+                    : this.detectorPool.execute(detector -> detector.predict(image));
+            boxes.attach(scope);
+            List<float[]> quads = new ArrayList<>(boxes.size());
+            for (NDArray box : boxes) {
+                quads.add(box.toFloatArray());
+            }
+            return quads;
+        }
+    }
+
+    /**
+     * 批量识别文字框图片
+     * 按宽度桶分组、组内按宽高比排序后分批，同一批次的输入宽度一致，推理时只会出现少数几种输入形状
+     *
+     * @param subImgs 文字框图片
+     * @return 与输入顺序一致的识别结果
+     */
+    private RecognizedText[] recognizeBatch(List<Image> subImgs) throws TranslateException {
+        int total = subImgs.size();
+        RecognizedText[] texts = new RecognizedText[total];
+        if (total == 0) {
+            return texts;
+        }
+        Integer[] order = new Integer[total];
+        int[] buckets = new int[total];
+        float[] ratios = new float[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+            Image subImg = subImgs.get(i);
+            buckets[i] = this.widthBuckets.bucketWidth(subImg);
+            ratios[i] = subImg.getWidth() / (float) Math.max(1, subImg.getHeight());
+        }
+        Arrays.sort(order, (o1, o2) -> buckets[o1] != buckets[o2]
+                ? Integer.compare(buckets[o1], buckets[o2])
+                : Float.compare(ratios[o1], ratios[o2]));
+
+        // 整张图片的文字框使用同一个识别推理器
+        Predictor<Image, RecognizedText> recognizer = this.recognizerPool.borrow();
+        try {
+            int begin = 0;
+            while (begin < total) {
+                int end = begin + 1;
+                while (end < total && end - begin < batchSize && buckets[order[end]] == buckets[order[begin]]) {
+                    end++;
+                }
+                List<Image> batch = new ArrayList<>(end - begin);
+                for (int i = begin; i < end; i++) {
+                    batch.add(subImgs.get(order[i]));
+                }
+                List<RecognizedText> batchTexts = recognizer.batchPredict(batch);
+                for (int i = begin; i < end; i++) {
+                    texts[order[i]] = batchTexts.get(i - begin);
+                }
+                begin = end;
+            }
+        } finally {
+            this.recognizerPool.release(recognizer);
+        }
+        return texts;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.chenjin.service.ocr.model;
+
+import ai.djl.inference.Predictor;
+import ai.djl.translate.TranslateException;
+import cn.hutool.core.util.StrUtil;
+import com.chenjin.exception.SignException;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 推理器池（Predictor本身非线程安全，按请求借用/归还）
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 09:20
+ **/
+@Slf4j
+public class PredictorPool<I, O> implements AutoCloseable {
+
+    private final String name;
+
+    private final long waitTimeoutNanos;
+
+    private final BlockingQueue<Predictor<I, O>> idle;
+
+    private final List<Predictor<I, O>> predictors;
+
+    /**
+     * 正在使用的推理器数量
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * 正在等待推理器的线程数量
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * 构造器
+     *
+     * @param name        池名称
+     * @param size        推理器数量
+     * @param waitTimeout 借用推理器的最长等待时间
+     * @param factory     推理器创建方法
+     */
+    public PredictorPool(String name, int size, Duration waitTimeout, Supplier<Predictor<I, O>> factory) {
+        if (size <= 0) {
+            throw new SignException("推理器池大小必须大于0");
+        }
+        this.name = name;
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.predictors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Predictor<I, O> predictor = factory.get();
+            predictors.add(predictor);
+            idle.offer(predictor);
+        }
+        log.info("推理器池[{}]初始化完成，数量：{}", name, size);
+    }
+
+    /**
+     * 借用推理器，超过等待时间抛出异常
+     */
+    public Predictor<I, O> borrow() {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        Predictor<I, O> predictor;
+        try {
+            predictor = idle.poll(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SignException("等待推理器时被中断");
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long waited = System.nanoTime() - start;
+        if (null == predictor) {
+            timeoutCount.incrementAndGet();
+            throw new SignException(StrUtil.format("推理器池[{}]繁忙，请稍后重试", name));
+        }
+        active.incrementAndGet();
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return predictor;
+    }
+
+    /**
+     * 归还推理器
+     */
+    public void release(Predictor<I, O> predictor) {
+        if (null == predictor) {
+            return;
+        }
+        active.decrementAndGet();
+        idle.offer(predictor);
+    }
+
+    /**
+     * 借用推理器执行推理，执行完成后自动归还
+     *
+     * @param action 推理动作
+     * @return 推理结果
+     */
+    public <R> R execute(PredictorAction<I, O, R> action) throws TranslateException {
+        Predictor<I, O> predictor = borrow();
+        try {
+            return action.apply(predictor);
+        } finally {
+            release(predictor);
+        }
+    }
+
+    /**
+     * 推理器池使用情况
+     */
+    public Stats stats() {
+        long borrowed = borrowCount.get();
+        return Stats.builder()
+                .name(name)
+                .size(predictors.size())
+                .active(active.get())
+                .idle(idle.size())
+                .waiting(waiting.get())
+                .borrowCount(borrowed)
+                .timeoutCount(timeoutCount.get())
+                .avgWaitMillis(borrowed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / borrowed))
+                .maxWaitMillis(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        predictors.forEach(Predictor::close);
+        idle.clear();
+    }
+
+    /**
+     * 推理动作
+     */
+    @FunctionalInterface
+    public interface PredictorAction<I, O, R> {
+        R apply(Predictor<I, O> predictor) throws TranslateException;
+    }
+
+    /**
+     * 推理器池使用情况
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        /**
+         * 池名称
+         */
+        private String name;
+        /**
+         * 推理器数量
+         */
+        private int size;
+        /**
+         * 使用中的数量
+         */
+        private int active;
+        /**
+         * 空闲数量
+         */
+        private int idle;
+        /**
+         * 等待中的线程数量
+         */
+        private int waiting;
+        /**
+         * 累计借用次数
+         */
+        private long borrowCount;
+        /**
+         * 累计等待超时次数
+         */
+        private long timeoutCount;
+        /**
+         * 平均等待时间（毫秒）
+         */
+        private long avgWaitMillis;
+        /**
+         * 最长等待时间（毫秒）
+         */
+        private long maxWaitMillis;
+    }
+}
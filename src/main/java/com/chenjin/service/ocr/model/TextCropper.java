@@ -0,0 +1,151 @@
+package com.chenjin.service.ocr.model;
+
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 文字框裁剪
+ * 水平的文字框直接按ROI拷贝，倾斜的文字框透视变换到与文字框等大的目标图上，开销只与文字面积相关，与整页大小无关
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 13:40
+ **/
+public class TextCropper implements AutoCloseable {
+
+    /**
+     * 坐标误差在该范围内时认为文字框是水平的
+     */
+    private static final float AXIS_ALIGNED_EPS = 0.5f;
+
+    /**
+     * 高宽比超过该值时认为是竖排文字，旋转为横排
+     */
+    private static final double VERTICAL_RATIO = 1.5;
+
+    private final Mat page;
+
+    /**
+     * 以下Mat在同一页的所有文字框之间复用
+     */
+    private final MatOfPoint2f srcPoints = new MatOfPoint2f();
+
+    private final MatOfPoint2f dstPoints = new MatOfPoint2f();
+
+    public TextCropper(Mat page) {
+        this.page = page;
+    }
+
+    /**
+     * 裁剪文字框
+     *
+     * @param quad 文字框四个点 lt, rt, rb, lb (x, y)
+     * @return 文字框图片（调用方负责释放）
+     */
+    public Mat crop(float[] quad) {
+        float[] lt = {quad[0], quad[1]};
+        float[] rt = {quad[2], quad[3]};
+        float[] rb = {quad[4], quad[5]};
+        float[] lb = {quad[6], quad[7]};
+        int cropWidth = (int) Math.max(distance(lt, rt), distance(rb, lb));
+        int cropHeight = (int) Math.max(distance(lt, lb), distance(rt, rb));
+        cropWidth = Math.max(cropWidth, 1);
+        cropHeight = Math.max(cropHeight, 1);
+
+        Mat crop;
+        if (isAxisAligned(quad)) {
+            crop = cropRoi(lt, cropWidth, cropHeight);
+        } else {
+            crop = cropWarp(quad, cropWidth, cropHeight);
+        }
+
+        if (crop.rows() * 1.0 / crop.cols() > VERTICAL_RATIO) {
+            Mat rotated = new Mat();
+            Core.rotate(crop, rotated, Core.ROTATE_90_COUNTERCLOCKWISE);
+            crop.release();
+            crop = rotated;
+        }
+        return crop;
+    }
+
+    /**
+     * 水平文字框：直接拷贝ROI区域（超出页面的部分补0，与透视变换的结果一致）
+     */
+    private Mat cropRoi(float[] lt, int cropWidth, int cropHeight) {
+        int x = Math.round(lt[0]);
+        int y = Math.round(lt[1]);
+        Mat crop = Mat.zeros(cropHeight, cropWidth, page.type());
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + cropWidth, page.cols());
+        int y1 = Math.min(y + cropHeight, page.rows());
+        if (x1 > x0 && y1 > y0) {
+            Mat src = page.submat(y0, y1, x0, x1);
+            Mat dst = crop.submat(y0 - y, y1 - y, x0 - x, x1 - x);
+            src.copyTo(dst);
+            src.release();
+            dst.release();
+        }
+        return crop;
+    }
+
+    /**
+     * 倾斜文字框：只透视变换到文字框大小的目标图上
+     */
+    private Mat cropWarp(float[] quad, int cropWidth, int cropHeight) {
+        srcPoints.fromArray(
+                new Point(quad[0], quad[1]),
+                new Point(quad[2], quad[3]),
+                new Point(quad[4], quad[5]),
+                new Point(quad[6], quad[7]));
+        dstPoints.fromArray(
+                new Point(0, 0),
+                new Point(cropWidth, 0),
+                new Point(cropWidth, cropHeight),
+                new Point(0, cropHeight));
+        Mat warpMat = Imgproc.getPerspectiveTransform(srcPoints, dstPoints);
+        Mat crop = new Mat();
+        Imgproc.warpPerspective(page, crop, warpMat, new Size(cropWidth, cropHeight));
+        warpMat.release();
+        return crop;
+    }
+
+    /**
+     * 文字框裁剪（并按需旋转）后的宽高比，即文字方向上的长度 / 文字高度
+     *
+     * @param quad 文字框四个点 lt, rt, rb, lb (x, y)
+     */
+    public static float textRatio(float[] quad) {
+        float[] lt = {quad[0], quad[1]};
+        float[] rt = {quad[2], quad[3]};
+        float[] rb = {quad[4], quad[5]};
+        float[] lb = {quad[6], quad[7]};
+        float width = Math.max(1, (int) Math.max(distance(lt, rt), distance(rb, lb)));
+        float height = Math.max(1, (int) Math.max(distance(lt, lb), distance(rt, rb)));
+        return height / width > VERTICAL_RATIO ? height / width : width / height;
+    }
+
+    /**
+     * 是否为水平的矩形文字框
+     */
+    private boolean isAxisAligned(float[] quad) {
+        return Math.abs(quad[1] - quad[3]) < AXIS_ALIGNED_EPS
+                && Math.abs(quad[5] - quad[7]) < AXIS_ALIGNED_EPS
+                && Math.abs(quad[0] - quad[6]) < AXIS_ALIGNED_EPS
+                && Math.abs(quad[2] - quad[4]) < AXIS_ALIGNED_EPS;
+    }
+
+    /**
+     * 欧式距离计算
+     */
+    private static float distance(float[] point1, float[] point2) {
+        float disX = point1[0] - point2[0];
+        float disY = point1[1] - point2[1];
+        return (float) Math.sqrt(disX * disX + disY * disY);
+    }
+
+    @Override
+    public void close() {
+        srcPoints.release();
+        dstPoints.release();
+    }
+}
@@ -0,0 +1,336 @@
+package com.chenjin.service.ocr.model;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.opencv.OpenCVImageFactory;
+import ai.djl.translate.TranslateException;
+import com.chenjin.exception.SignException;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大图分块文字检测
+ * 大图整体缩放到检测尺寸时小字会丢失，这里把大图切成带重叠的分块，各分块按原分辨率并行检测，再合并去重
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 16:40
+ **/
+@Slf4j
+public class TiledDetection implements AutoCloseable {
+
+    /**
+     * 被另一个文字框覆盖的面积比例超过该值时认为是重复检测
+     */
+    private static final float CONTAIN_THRESHOLD = 0.6f;
+
+    /**
+     * 被分块边界截断的同一行文字：垂直方向重叠比例超过该值时合并
+     */
+    private static final float SAME_LINE_THRESHOLD = 0.6f;
+
+    private final int tileSize;
+
+    private final int overlap;
+
+    private final int minSide;
+
+    private final ExecutorService executor;
+
+    /**
+     * 单个分块的检测方法
+     */
+    @FunctionalInterface
+    public interface TileDetector {
+        List<float[]> detect(Image tile) throws TranslateException;
+    }
+
+    /**
+     * 构造器
+     *
+     * @param tileSize    分块边长
+     * @param overlap     相邻分块的重叠宽度
+     * @param minSide     图片最长边超过该值时才分块
+     * @param parallelism 并行检测的线程数
+     */
+    public TiledDetection(int tileSize, int overlap, int minSide, int parallelism) {
+        if (overlap >= tileSize) {
+            throw new SignException("分块重叠宽度必须小于分块边长");
+        }
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+        this.minSide = minSide;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ocr-det-tile-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("大图分块检测初始化完成，分块边长：{}，重叠：{}，触发边长：{}", tileSize, overlap, minSide);
+    }
+
+    /**
+     * 图片是否需要分块检测
+     */
+    public boolean shouldTile(Image image) {
+        return Math.max(image.getWidth(), image.getHeight()) > minSide;
+    }
+
+    /**
+     * 分块并行检测，返回原图坐标系下合并去重后的文字框
+     *
+     * @param image    原图
+     * @param detector 单个分块的检测方法
+     */
+    public List<float[]> detect(Image image, TileDetector detector) throws TranslateException {
+        Mat mat = (Mat) image.getWrappedImage();
+        List<Rect> tiles = tiles(mat.cols(), mat.rows());
+        List<Future<List<float[]>>> futures = new ArrayList<>(tiles.size());
+        for (Rect tile : tiles) {
+            futures.add(executor.submit(() -> {
+                Mat roi = mat.submat(tile);
+                try {
+                    List<float[]> boxes = detector.detect(OpenCVImageFactory.getInstance().fromImage(roi));
+                    // 平移到原图坐标
+                    for (float[] box : boxes) {
+                        for (int i = 0; i < 8; i += 2) {
+                            box[i] += tile.x;
+                            box[i + 1] += tile.y;
+                        }
+                    }
+                    return boxes;
+                } finally {
+                    roi.release();
+                }
+            }));
+        }
+
+        List<TileBox> boxes = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                for (float[] quad : futures.get(i).get()) {
+                    boxes.add(new TileBox(quad, i));
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new SignException("等待分块检测结果时被中断");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof TranslateException translateException) {
+                throw translateException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TranslateException(cause);
+        }
+        return merge(boxes);
+    }
+
+    /**
+     * 计算分块区域，相邻分块重叠overlap，最后一块与图片边缘对齐
+     */
+    List<Rect> tiles(int width, int height) {
+        List<Rect> tiles = new ArrayList<>();
+        for (int y : starts(height)) {
+            for (int x : starts(width)) {
+                tiles.add(new Rect(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+            }
+        }
+        return tiles;
+    }
+
+    private List<Integer> starts(int length) {
+        List<Integer> starts = new ArrayList<>();
+        if (length <= tileSize) {
+            starts.add(0);
+            return starts;
+        }
+        int step = tileSize - overlap;
+        for (int start = 0; ; start += step) {
+            if (start + tileSize >= length) {
+                starts.add(length - tileSize);
+                break;
+            }
+            starts.add(start);
+        }
+        return starts;
+    }
+
+    /**
+     * 合并各分块的检测结果，按外接矩形的左边界排序后扫描，每个文字框只与水平方向仍可能相交的文字框比较
+     * 1. 大部分被另一个更大的文字框覆盖的文字框去掉（重叠区域的重复检测）
+     * 2. 来自不同分块、同一行上相互重叠的各段（被分块边界截断的文字）合并为一个文字框，
+     * 取最左一段的左边和最右一段的右边，保留倾斜角度；没有合并的文字框保持原样
+     */
+    static List<float[]> merge(List<TileBox> boxes) {
+        List<TileBox> sorted = new ArrayList<>(boxes);
+        sorted.sort(Comparator.comparingDouble(box -> box.bounds[0]));
+
+        // 去重：active为右边界还在当前文字框左边界右侧的已保留文字框
+        List<TileBox> kept = new ArrayList<>(sorted.size());
+        List<TileBox> active = new ArrayList<>();
+        for (TileBox box : sorted) {
+            active.removeIf(other -> other.bounds[2] <= box.bounds[0]);
+            boolean duplicated = false;
+            for (Iterator<TileBox> it = active.iterator(); it.hasNext(); ) {
+                TileBox other = it.next();
+                float intersection = intersection(box.bounds, other.bounds);
+                if (other.area() >= box.area()) {
+                    if (intersection >= CONTAIN_THRESHOLD * box.area()) {
+                        duplicated = true;
+                        break;
+                    }
+                } else if (intersection >= CONTAIN_THRESHOLD * other.area()) {
+                    other.duplicated = true;
+                    it.remove();
+                }
+            }
+            if (!duplicated) {
+                kept.add(box);
+                active.add(box);
+            }
+        }
+
+        // 合并：open为最右一段的右边界还在当前文字框左边界右侧的文字行，与最右一段相接处比较是否同一行
+        List<TileLine> lines = new ArrayList<>(kept.size());
+        List<TileLine> open = new ArrayList<>();
+        for (TileBox box : kept) {
+            if (box.duplicated) {
+                continue;
+            }
+            open.removeIf(line -> line.right.bounds[2] <= box.bounds[0]);
+            TileLine target = null;
+            for (TileLine line : open) {
+                if (!line.tiles.contains(box.tile) && sameLine(line.right, box)) {
+                    target = line;
+                    break;
+                }
+            }
+            if (null == target) {
+                target = new TileLine(box);
+                lines.add(target);
+                open.add(target);
+            } else {
+                target.add(box);
+            }
+        }
+
+        List<float[]> result = new ArrayList<>(lines.size());
+        lines.forEach(line -> result.add(line.quad()));
+        return result;
+    }
+
+    /**
+     * 水平方向相交，且左侧一段的右边（rt、rb）与右侧一段的左边（lt、lb）垂直方向基本重合
+     * 比较两段相接处的边而不是外接矩形，倾斜的文字行外接矩形过高
+     */
+    private static boolean sameLine(TileBox left, TileBox right) {
+        float overlapX = Math.min(left.bounds[2], right.bounds[2]) - Math.max(left.bounds[0], right.bounds[0]);
+        float leftTop = left.quad[3], leftBottom = left.quad[5];
+        float rightTop = right.quad[1], rightBottom = right.quad[7];
+        float overlapY = Math.min(leftBottom, rightBottom) - Math.max(leftTop, rightTop);
+        float minHeight = Math.min(leftBottom - leftTop, rightBottom - rightTop);
+        return overlapX > 0 && minHeight > 0 && overlapY >= SAME_LINE_THRESHOLD * minHeight;
+    }
+
+    private static float intersection(float[] a, float[] b) {
+        float w = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        float h = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        return w > 0 && h > 0 ? w * h : 0;
+    }
+
+    /**
+     * 分块检测出的文字框
+     */
+    static class TileBox {
+        /**
+         * 原图坐标系下的四个点 lt, rt, rb, lb
+         */
+        private final float[] quad;
+        /**
+         * 外接矩形 [minX, minY, maxX, maxY]
+         */
+        private final float[] bounds;
+        /**
+         * 所属分块
+         */
+        private final int tile;
+        /**
+         * 是否被更大的文字框覆盖（去重时去掉）
+         */
+        private boolean duplicated;
+
+        TileBox(float[] quad, int tile) {
+            this.quad = quad;
+            this.tile = tile;
+            float minX = quad[0], minY = quad[1], maxX = quad[0], maxY = quad[1];
+            for (int i = 2; i < 8; i += 2) {
+                minX = Math.min(minX, quad[i]);
+                maxX = Math.max(maxX, quad[i]);
+                minY = Math.min(minY, quad[i + 1]);
+                maxY = Math.max(maxY, quad[i + 1]);
+            }
+            this.bounds = new float[]{minX, minY, maxX, maxY};
+        }
+
+        float area() {
+            return (bounds[2] - bounds[0]) * (bounds[3] - bounds[1]);
+        }
+    }
+
+    /**
+     * 合并中的一行文字（一个或多个分块中的各段）
+     */
+    private static class TileLine {
+        /**
+         * 最左、最右的一段
+         */
+        private TileBox left;
+
+        private TileBox right;
+
+        /**
+         * 各段所属的分块
+         */
+        private final Set<Integer> tiles = new HashSet<>();
+
+        TileLine(TileBox box) {
+            this.left = box;
+            this.right = box;
+            tiles.add(box.tile);
+        }
+
+        void add(TileBox box) {
+            if (box.bounds[0] < left.bounds[0]) {
+                left = box;
+            }
+            if (box.bounds[2] > right.bounds[2]) {
+                right = box;
+            }
+            tiles.add(box.tile);
+        }
+
+        /**
+         * 只有一段时为原文字框，否则取最左一段的 lt、lb 和最右一段的 rt、rb
+         */
+        float[] quad() {
+            if (left == right) {
+                return left.quad;
+            }
+            return new float[]{left.quad[0], left.quad[1], right.quad[2], right.quad[3],
+                    right.quad[4], right.quad[5], left.quad[6], left.quad[7]};
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,414 @@
+package com.chenjin.service.ocr.properties;
+
+import ai.onnxruntime.OrtSession;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ocr相关属性
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 09:12
+ **/
+@Data
+@ConfigurationProperties(prefix = "ocr")
+public class OcrProperties {
+    /**
+     * 推理器池配置
+     */
+    private Pool pool = new Pool();
+    /**
+     * 文字检测配置
+     */
+    private Det det = new Det();
+    /**
+     * 文字识别配置
+     */
+    private Rec rec = new Rec();
+    /**
+     * 识别结果缓存配置
+     */
+    private Cache cache = new Cache();
+    /**
+     * 关键词查找配置
+     */
+    private Keyword keyword = new Keyword();
+    /**
+     * 空白页判断配置
+     */
+    private BlankPage blankPage = new BlankPage();
+    /**
+     * pdf关键词查找配置
+     */
+    private Pdf pdf = new Pdf();
+
+    /**
+     * 推理器池属性
+     */
+    @Data
+    public static class Pool {
+        /**
+         * 每种推理器的数量（小于等于0时按cpu核数创建）
+         */
+        private int size = 0;
+        /**
+         * 借用推理器（开启检测合批时为等待检测结果）的最长等待时间
+         */
+        private Duration waitTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 实际的推理器数量
+         */
+        public int resolveSize() {
+            return size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    /**
+     * 文字检测属性
+     */
+    @Data
+    public static class Det {
+        /**
+         * 跨请求合批配置
+         */
+        private Batch batch = new Batch();
+        /**
+         * 大图分块检测配置
+         */
+        private Tile tile = new Tile();
+        /**
+         * 推理会话配置
+         */
+        private Session session = new Session();
+    }
+
+    /**
+     * 跨请求合批属性
+     */
+    @Data
+    public static class Batch {
+        /**
+         * 是否开启合批（开启时检测推理器由合批调度器持有，不再创建检测推理器池）
+         */
+        private boolean enabled = true;
+        /**
+         * 合批等待窗口（仅在有并发推理时等待）
+         */
+        private Duration window = Duration.ofMillis(5);
+        /**
+         * 单批次最多图片数量
+         */
+        private int maxSize = 4;
+    }
+
+    /**
+     * 大图分块检测配置
+     */
+    @Data
+    public static class Tile {
+        /**
+         * 是否开启分块检测
+         */
+        private boolean enabled = false;
+        /**
+         * 分块边长
+         */
+        private int tileSize = 960;
+        /**
+         * 相邻分块的重叠宽度（需大于最大文字高度，保证文字完整出现在某个分块中）
+         */
+        private int overlap = 96;
+        /**
+         * 图片最长边超过该值时才分块
+         */
+        private int minSide = 2000;
+    }
+
+    /**
+     * 文字识别属性
+     */
+    @Data
+    public static class Rec {
+        /**
+         * 单次批量识别的文字框数量
+         */
+        private int batchSize = 6;
+        /**
+         * 输入宽度分桶（文字框缩放到高度48后，宽度取不小于它的最小桶宽度）
+         */
+        private List<Integer> widthBuckets = new ArrayList<>(List.of(320, 480, 640, 960, 1280));
+        /**
+         * 推理会话配置
+         */
+        private Session session = new Session();
+    }
+
+    /**
+     * OnnxRuntime推理会话属性（单独配置的项优先于预设）
+     * 同一模型的所有推理器共用一个会话及其线程池
+     */
+    @Data
+    public static class Session {
+        /**
+         * 预设
+         */
+        private Preset preset = Preset.DEFAULT;
+        /**
+         * 算子内并行线程数
+         */
+        private Integer intraOpNumThreads;
+        /**
+         * 算子间并行线程数（仅PARALLEL执行模式有效）
+         */
+        private Integer interOpNumThreads;
+        /**
+         * 执行模式
+         */
+        private OrtSession.SessionOptions.ExecutionMode executionMode;
+        /**
+         * 图优化级别
+         */
+        private OrtSession.SessionOptions.OptLevel optLevel;
+        /**
+         * 是否开启内存复用规划（只能开启，false时保持OnnxRuntime默认值）
+         */
+        private Boolean memoryPatternOptimization;
+        /**
+         * 是否使用CPU内存池（只能开启，false时保持OnnxRuntime默认值）
+         */
+        private Boolean cpuArenaAllocator;
+
+        /**
+         * 转换为模型加载参数
+         */
+        public Map<String, String> toOptions() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            Map<String, String> options = new LinkedHashMap<>();
+            switch (preset) {
+                case LATENCY -> {
+                    // 检测和识别两个模型共用cpu，单个请求尽量用满一半核数
+                    options.put("intraOpNumThreads", String.valueOf(Math.max(1, cores / 2)));
+                    options.put("interOpNumThreads", "1");
+                    options.put("executionMode", OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL.name());
+                    options.put("optLevel", OrtSession.SessionOptions.OptLevel.ALL_OPT.name());
+                    options.put("memoryPatternOptimization", "true");
+                    options.put("cpuArenaAllocator", "true");
+                }
+                case THROUGHPUT -> {
+                    // 单次推理只在调用线程上执行，并发度交给推理器池，避免多个请求同时推理时线程超额
+                    options.put("intraOpNumThreads", "1");
+                    options.put("interOpNumThreads", "1");
+                    options.put("executionMode", OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL.name());
+                    options.put("optLevel", OrtSession.SessionOptions.OptLevel.ALL_OPT.name());
+                    options.put("memoryPatternOptimization", "true");
+                    options.put("cpuArenaAllocator", "true");
+                }
+                default -> {
+                }
+            }
+            if (null != intraOpNumThreads) {
+                options.put("intraOpNumThreads", String.valueOf(intraOpNumThreads));
+            }
+            if (null != interOpNumThreads) {
+                options.put("interOpNumThreads", String.valueOf(interOpNumThreads));
+            }
+            if (null != executionMode) {
+                options.put("executionMode", executionMode.name());
+            }
+            if (null != optLevel) {
+                options.put("optLevel", optLevel.name());
+            }
+            if (null != memoryPatternOptimization) {
+                options.put("memoryPatternOptimization", String.valueOf(memoryPatternOptimization));
+            }
+            if (null != cpuArenaAllocator) {
+                options.put("cpuArenaAllocator", String.valueOf(cpuArenaAllocator));
+            }
+            return options;
+        }
+    }
+
+    /**
+     * 推理会话预设
+     */
+    public enum Preset {
+        /**
+         * OnnxRuntime默认配置
+         */
+        DEFAULT,
+        /**
+         * 低延迟：单个请求使用多线程推理，适合并发较低的场景
+         */
+        LATENCY,
+        /**
+         * 高吞吐：单个请求单线程推理，由推理器池并发，适合并发较高的场景
+         */
+        THROUGHPUT
+    }
+
+    /**
+     * 识别结果缓存属性
+     */
+    @Data
+    public static class Cache {
+        /**
+         * 是否开启识别结果缓存
+         */
+        private boolean enabled = true;
+        /**
+         * 内存中最多缓存的图片数量
+         */
+        private long maximumSize = 512;
+        /**
+         * 内存缓存访问过期时间
+         */
+        private Duration expireAfterAccess = Duration.ofHours(2);
+        /**
+         * 磁盘缓存配置
+         */
+        private Disk disk = new Disk();
+    }
+
+    /**
+     * 磁盘缓存属性
+     */
+    @Data
+    public static class Disk {
+        /**
+         * 是否开启磁盘缓存（重启后仍然有效）
+         */
+        private boolean enabled = true;
+        /**
+         * 磁盘缓存目录
+         */
+        private String dir = System.getProperty("java.io.tmpdir") + "/sign-service/ocr-cache";
+        /**
+         * 磁盘中最多缓存的图片数量
+         */
+        private int maxEntries = 10000;
+
+        /**
+         * 指定目录的磁盘缓存配置
+         */
+        static Disk of(String dir) {
+            Disk disk = new Disk();
+            disk.setDir(dir);
+            return disk;
+        }
+    }
+
+    /**
+     * 关键词查找属性
+     */
+    @Data
+    public static class Keyword {
+        /**
+         * 是否由粗到细查找关键词（先缩小整页检测文字行，再在原图上只对候选区域检测、识别）
+         */
+        private boolean coarseToFine = false;
+        /**
+         * 粗检测时整页缩小后的最长边
+         */
+        private int coarseSide = 640;
+        /**
+         * 命中关键词要求的最低字符概率（任一字符低于该值时不认为命中，0为不限制）
+         */
+        private float minCharConfidence = 0;
+    }
+
+    /**
+     * 空白页判断属性
+     */
+    @Data
+    public static class BlankPage {
+        /**
+         * pdf按图片查找关键词时，是否跳过空白页
+         */
+        private boolean enabled = true;
+        /**
+         * 灰度值低于该值的像素视为墨迹
+         */
+        private int inkThreshold = 160;
+        /**
+         * 墨迹像素占比低于该值时视为空白页
+         */
+        private float minInkRatio = 0.0005f;
+        /**
+         * 是否同时按文字行形状判断（墨迹不多且没有文字行的页面也跳过）
+         */
+        private boolean lineCheck = false;
+    }
+
+    /**
+     * pdf关键词查找属性
+     */
+    @Data
+    public static class Pdf {
+        /**
+         * 文字层并行提取的线程数（小于等于0时按cpu核数，为1时不并行）
+         */
+        private int textThreads = 0;
+        /**
+         * 页数达到该值时文字层才并行提取（每个线程需要单独解析一份pdf）
+         */
+        private int parallelMinPages = 64;
+        /**
+         * 渲染线程数（每个线程单独打开一份pdf）
+         */
+        private int renderThreads = 2;
+        /**
+         * 识别线程数（小于等于0时与推理器数量一致）
+         */
+        private int ocrThreads = 0;
+        /**
+         * 渲染完成等待识别的最大页数
+         */
+        private int queueSize = 4;
+        /**
+         * 渲染分辨率
+         */
+        private int dpi = 300;
+        /**
+         * 单次查找关键词（文字层并行查找、按图片识别）的最长等待时间
+         */
+        private Duration searchTimeout = Duration.ofMinutes(5);
+        /**
+         * 文字层索引配置
+         */
+        private Index index = new Index();
+    }
+
+    /**
+     * pdf文字层索引属性
+     */
+    @Data
+    public static class Index {
+        /**
+         * 是否开启文字层索引（同一份pdf再次查找关键词时不再解析文字层）
+         */
+        private boolean enabled = true;
+        /**
+         * 内存中最多缓存的字形数量
+         */
+        private long maximumGlyphs = 2_000_000;
+        /**
+         * 内存缓存访问过期时间
+         */
+        private Duration expireAfterAccess = Duration.ofHours(2);
+        /**
+         * 后台等待建立索引的最大文档数量（超过时不再建立）
+         */
+        private int queueSize = 16;
+        /**
+         * 磁盘缓存配置
+         */
+        private Disk disk = Disk.of(System.getProperty("java.io.tmpdir") + "/sign-service/pdf-index");
+    }
+}
@@ -0,0 +1,36 @@
+package com.chenjin.service.ocr.translator;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 文字检测时单张图片的缩放信息
+ */
+@Getter
+@AllArgsConstructor
+public class DetGeometry {
+    /**
+     * 原图高度
+     */
+    private final int imgHeight;
+    /**
+     * 原图宽度
+     */
+    private final int imgWidth;
+    /**
+     * 缩放后的高度
+     */
+    private final int resizeHeight;
+    /**
+     * 缩放后的宽度
+     */
+    private final int resizeWidth;
+    /**
+     * 高度缩放比例
+     */
+    private final float ratioH;
+    /**
+     * 宽度缩放比例
+     */
+    private final float ratioW;
+}
@@ -1,29 +1,34 @@
 package com.chenjin.service.ocr.translator;
 
 import ai.djl.modality.cv.Image;
-import ai.djl.modality.cv.util.NDImageUtils;
 import ai.djl.ndarray.NDArray;
-import ai.djl.ndarray.NDArrays;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
-import ai.djl.ndarray.index.NDIndex;
-import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
 import ai.djl.translate.Batchifier;
 import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
-import com.chenjin.util.NDArrayUtils;
+import com.chenjin.util.OpenCVUtils;
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * 文字检测前后处理
  */
 public class OCRDetectionTranslator implements Translator<Image, NDList> {
+    /**
+     * 单次推理上下文中保存图片缩放信息的key（翻译器本身不保存任何单张图片的状态，可被多个推理器并发使用）
+     */
+    private static final String GEOMETRY_KEY = "detGeometry";
+
     // det_algorithm == "DB"
     private final float thresh = 0.3f;
     private final boolean useDilation = false;
@@ -35,10 +40,15 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
     private final int minSize;
     private final float boxThresh;
     private final float unClipRatio;
-    private float ratioH;
-    private float ratioW;
-    private int imgHeight;
-    private int imgWidth;
+    /**
+     * 轮廓数量达到该值时并行处理
+     */
+    private static final int PARALLEL_CONTOURS = 64;
+    /**
+     * 归一化均值、方差（RGB）
+     */
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
 
     public OCRDetectionTranslator(Map<String, ?> arguments) {
         limitSideLen =
@@ -65,55 +75,64 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
 
     @Override
     public NDList processOutput(TranslatorContext ctx, NDList list) {
-        NDManager manager = ctx.getNDManager();
+        DetGeometry geometry = (DetGeometry) ctx.getAttachment(GEOMETRY_KEY);
+        // 概率图 [1, 1, H, W] 一次性拷贝到Mat
         NDArray pred = list.get(0);
-        pred = pred.squeeze();
-        NDArray segmentation = pred.gt(thresh);   // thresh=0.3 .mul(255f)
+        Shape shape = pred.getShape();
+        int rows = (int) shape.get(shape.dimension() - 2);
+        int cols = (int) shape.get(shape.dimension() - 1);
+        Mat predMat = new Mat(rows, cols, CvType.CV_32F);
+        try {
+            predMat.put(0, 0, pred.toFloatArray());
+            return postprocess(ctx.getNDManager(), predMat, geometry);
+        } finally {
+            predMat.release();
+        }
+    }
 
-        segmentation = segmentation.toType(DataType.UINT8, true);
-        Shape shape = segmentation.getShape();
-        int rows = (int) shape.get(0);
-        int cols = (int) shape.get(1);
+    /**
+     * 检测结果后处理：概率图 -> 文字框
+     * 文字框全程以 float[8]（lt, rt, rb, lb 四个点的 x, y）在java中处理，只在最后转换为NDArray
+     *
+     * @param manager  内存管理器
+     * @param predMat  单张图片的概率图（CV_32F，已去除补齐的部分，调用方负责释放）
+     * @param geometry 图片缩放信息
+     */
+    public NDList postprocess(NDManager manager, Mat predMat, DetGeometry geometry) {
+        // 二值化、轮廓、打分都在opencv中完成
 
+        // segmentation = pred > thresh (0/255)
+        Mat segmentation = new Mat();
+        Imgproc.threshold(predMat, segmentation, thresh, 255, Imgproc.THRESH_BINARY);
         Mat newMask = new Mat();
+        segmentation.convertTo(newMask, CvType.CV_8U);
+        segmentation.release();
         if (this.useDilation) {
-            Mat mask = new Mat();
-            //convert from NDArray to Mat
-            Mat srcMat = NDArrayUtils.uint8NDArrayToMat(segmentation);
             // size 越小，腐蚀的单位越小，图片越接近原图
-            // Mat dilation_kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(2, 2));
-            Mat dilation_kernel = NDArrayUtils.uint8ArrayToMat(new byte[][]{{1, 1}, {1, 1}});
+            Mat dilation_kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(2, 2));
             /*
               膨胀说明： 图像的一部分区域与指定的核进行卷积， 求核的最`大`值并赋值给指定区域。 膨胀可以理解为图像中`高亮区域`的'领域扩大'。
               意思是高亮部分会侵蚀不是高亮的部分，使高亮部分越来越多。
              */
-            Imgproc.dilate(srcMat, mask, dilation_kernel);
-            //destination Matrix
-            Scalar scalar = new Scalar(255);
-            Core.multiply(mask, scalar, newMask);
-            // release Mat
-            mask.release();
-            srcMat.release();
+            Imgproc.dilate(newMask, newMask, dilation_kernel);
             dilation_kernel.release();
-        } else {
-            Mat srcMat = NDArrayUtils.uint8NDArrayToMat(segmentation);
-            //destination Matrix
-            Scalar scalar = new Scalar(255);
-            Core.multiply(srcMat, scalar, newMask);
-            // release Mat
-            srcMat.release();
         }
 
-        NDArray boxes = boxesFromBitmap(manager, pred, newMask);
+        List<float[]> boxes = boxesFromBitmap(predMat, newMask);
 
-        //boxes[:, :, 0] = boxes[:, :, 0] / ratioW
-        NDArray boxes1 = boxes.get(":, :, 0").div(ratioW);
-        boxes.set(new NDIndex(":, :, 0"), boxes1);
-        //boxes[:, :, 1] = boxes[:, :, 1] / ratioH
-        NDArray boxes2 = boxes.get(":, :, 1").div(ratioH);
-        boxes.set(new NDIndex(":, :, 1"), boxes2);
-
-        NDList dt_boxes = this.filterTagDetRes(boxes);
+        NDList dt_boxes = new NDList(boxes.size());
+        for (float[] box : boxes) {
+            //boxes[:, :, 0] = boxes[:, :, 0] / ratioW
+            //boxes[:, :, 1] = boxes[:, :, 1] / ratioH
+            for (int i = 0; i < 8; i += 2) {
+                box[i] /= geometry.getRatioW();
+                box[i + 1] /= geometry.getRatioH();
+            }
+            float[] filtered = filterTagDetRes(box, geometry);
+            if (null != filtered) {
+                dt_boxes.add(manager.create(filtered, new Shape(4, 2)));
+            }
+        }
 
         dt_boxes.detach();
 
@@ -123,88 +142,84 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
         return dt_boxes;
     }
 
-
-    private NDList filterTagDetRes(NDArray dt_boxes) {
-        NDList boxesList = new NDList();
-
-        int num = (int) dt_boxes.getShape().get(0);
-        for (int i = 0; i < num; i++) {
-            NDArray box = dt_boxes.get(i);
-            box = orderPointsClockwise(box);
-            box = clipDetRes(box);
-            float[] box0 = box.get(0).toFloatArray();
-            float[] box1 = box.get(1).toFloatArray();
-            float[] box3 = box.get(3).toFloatArray();
-            int rect_width = (int) Math.sqrt(Math.pow(box1[0] - box0[0], 2) + Math.pow(box1[1] - box0[1], 2));
-            int rect_height = (int) Math.sqrt(Math.pow(box3[0] - box0[0], 2) + Math.pow(box3[1] - box0[1], 2));
-            if (rect_width <= 3 || rect_height <= 3)
-                continue;
-            boxesList.add(box);
-        }
-
-        return boxesList;
+    /**
+     * 排序、裁剪到图片范围内并过滤过小的文字框
+     *
+     * @return 过滤掉时返回null
+     */
+    private float[] filterTagDetRes(float[] box, DetGeometry geometry) {
+        box = orderPointsClockwise(box);
+        clipDetRes(box, geometry);
+        int rect_width = (int) Math.sqrt(Math.pow(box[2] - box[0], 2) + Math.pow(box[3] - box[1], 2));
+        int rect_height = (int) Math.sqrt(Math.pow(box[6] - box[0], 2) + Math.pow(box[7] - box[1], 2));
+        if (rect_width <= 3 || rect_height <= 3)
+            return null;
+        return box;
     }
 
-    private NDArray clipDetRes(NDArray points) {
-        for (int i = 0; i < points.getShape().get(0); i++) {
-            int value = Math.max((int) points.get(i, 0).toFloatArray()[0], 0);
-            value = Math.min(value, imgWidth - 1);
-            points.set(new NDIndex(i + ",0"), value);
-            value = Math.max((int) points.get(i, 1).toFloatArray()[0], 0);
-            value = Math.min(value, imgHeight - 1);
-            points.set(new NDIndex(i + ",1"), value);
+    private void clipDetRes(float[] points, DetGeometry geometry) {
+        for (int i = 0; i < 8; i += 2) {
+            int value = Math.max((int) points[i], 0);
+            points[i] = Math.min(value, geometry.getImgWidth() - 1);
+            value = Math.max((int) points[i + 1], 0);
+            points[i + 1] = Math.min(value, geometry.getImgHeight() - 1);
         }
-
-        return points;
     }
 
     /**
      * sort the points based on their x-coordinates
      * 顺时针
+     *
+     * @param pts 4个点 (x0, y0, x1, y1, ...)
+     * @return lt, rt, rb, lb
      */
-
-    private NDArray orderPointsClockwise(NDArray pts) {
-        NDList list = new NDList();
-        long[] indexes = pts.get(":, 0").argSort().toLongArray();
+    private float[] orderPointsClockwise(float[] pts) {
+        int[] indexes = {0, 1, 2, 3};
+        // 按x坐标插入排序（只有4个点）
+        for (int i = 1; i < 4; i++) {
+            int cur = indexes[i];
+            int j = i - 1;
+            while (j >= 0 && pts[indexes[j] * 2] > pts[cur * 2]) {
+                indexes[j + 1] = indexes[j];
+                j--;
+            }
+            indexes[j + 1] = cur;
+        }
 
         // grab the left-most and right-most points from the sorted
-        // x-roodinate points
-        Shape s1 = pts.getShape();
-        NDArray leftMost1 = pts.get(indexes[0] + ",:");
-        NDArray leftMost2 = pts.get(indexes[1] + ",:");
-        NDArray leftMost = leftMost1.concat(leftMost2).reshape(2, 2);
-        NDArray rightMost1 = pts.get(indexes[2] + ",:");
-        NDArray rightMost2 = pts.get(indexes[3] + ",:");
-        NDArray rightMost = rightMost1.concat(rightMost2).reshape(2, 2);
-
-        // now, sort the left-most coordinates according to their
+        // x-roodinate points, then sort them according to their
         // y-coordinates so we can grab the top-left and bottom-left
         // points, respectively
-        indexes = leftMost.get(":, 1").argSort().toLongArray();
-        NDArray lt = leftMost.get(indexes[0] + ",:");
-        NDArray lb = leftMost.get(indexes[1] + ",:");
-        indexes = rightMost.get(":, 1").argSort().toLongArray();
-        NDArray rt = rightMost.get(indexes[0] + ",:");
-        NDArray rb = rightMost.get(indexes[1] + ",:");
-
-        list.add(lt);
-        list.add(rt);
-        list.add(rb);
-        list.add(lb);
-
-        NDArray rect = NDArrays.concat(list).reshape(4, 2);
-        return rect;
+        int lt = indexes[0];
+        int lb = indexes[1];
+        if (pts[lb * 2 + 1] < pts[lt * 2 + 1]) {
+            lt = indexes[1];
+            lb = indexes[0];
+        }
+        int rt = indexes[2];
+        int rb = indexes[3];
+        if (pts[rb * 2 + 1] < pts[rt * 2 + 1]) {
+            rt = indexes[3];
+            rb = indexes[2];
+        }
+
+        return new float[]{
+                pts[lt * 2], pts[lt * 2 + 1],
+                pts[rt * 2], pts[rt * 2 + 1],
+                pts[rb * 2], pts[rb * 2 + 1],
+                pts[lb * 2], pts[lb * 2 + 1]};
     }
 
     /**
      * Get boxes from the binarized image predicted by DB
+     * 轮廓较多时并行计算每个轮廓的文字框和得分
      *
      * @param pred   the binarized image predicted by DB.
      * @param bitmap new 'pred' after threshold filtering.
      */
-    private NDArray boxesFromBitmap(NDManager manager, NDArray pred, Mat bitmap) {
-        int dest_height = (int) pred.getShape().get(0);
-        int dest_width = (int) pred.getShape().get(1);
+    private List<float[]> boxesFromBitmap(Mat pred, Mat bitmap) {
+        int dest_height = pred.rows();
+        int dest_width = pred.cols();
         int height = bitmap.rows();
         int width = bitmap.cols();
 
@@ -217,46 +232,55 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
                 hierarchy,
                 Imgproc.RETR_LIST,
                 Imgproc.CHAIN_APPROX_SIMPLE);
+        hierarchy.release();
 
         int num_contours = Math.min(contours.size(), maxCandidates);
-        NDList boxList = new NDList();
-        float[] scores = new float[num_contours];
-
-        for (int index = 0; index < num_contours; index++) {
-            MatOfPoint contour = contours.get(index);
-            MatOfPoint2f newContour = new MatOfPoint2f(contour.toArray());
-            float[][] pointsArr = new float[4][2];
-            int sside = getMiniBoxes(newContour, pointsArr);
-            if (sside < this.minSize)
-                continue;
-            NDArray points = manager.create(pointsArr);
-            float score = boxScoreFast(manager, pred, points);
-            if (score < this.boxThresh)
-                continue;
+        IntStream indexes = IntStream.range(0, num_contours);
+        if (num_contours >= PARALLEL_CONTOURS) {
+            indexes = indexes.parallel();
+        }
+        List<float[]> boxes = indexes
+                .mapToObj(index -> boxFromContour(pred, contours.get(index), width, height, dest_width, dest_height))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-            NDArray box = unClip(manager, points); // TODO getMiniBoxes(box)
+        // release memory
+        contours.forEach(Mat::release);
 
-            // box[:, 0] = np.clip(np.round(box[:, 0] / width * dest_width), 0, dest_width)
-            NDArray boxes1 = box.get(":,0").div(width).mul(dest_width).round().clip(0, dest_width);
-            box.set(new NDIndex(":, 0"), boxes1);
-            // box[:, 1] = np.clip(np.round(box[:, 1] / height * dest_height), 0, dest_height)
-            NDArray boxes2 = box.get(":,1").div(height).mul(dest_height).round().clip(0, dest_height);
-            box.set(new NDIndex(":, 1"), boxes2);
+        return boxes;
+    }
 
-            boxList.add(box);
-            scores[index] = score;
+    /**
+     * 单个轮廓 -> 文字框
+     *
+     * @return 文字框过小或得分过低时返回null
+     */
+    private float[] boxFromContour(Mat pred, MatOfPoint contour, int width, int height, int dest_width, int dest_height) {
+        MatOfPoint2f newContour = new MatOfPoint2f();
+        contour.convertTo(newContour, CvType.CV_32F);
+        try {
+            RotatedRect rect = Imgproc.minAreaRect(newContour);
+            Rect boundingRect = rect.boundingRect();
+            int sside = Math.min(boundingRect.height, boundingRect.width);
+            if (sside < this.minSize)
+                return null;
+            float[] points = getMiniBoxes(rect);
+            float score = boxScoreFast(pred, points);
+            if (score < this.boxThresh)
+                return null;
+
+            float[] box = unClip(points); // TODO getMiniBoxes(box)
 
-            // release memory
-            contour.release();
+            for (int i = 0; i < 8; i += 2) {
+                // box[:, 0] = np.clip(np.round(box[:, 0] / width * dest_width), 0, dest_width)
+                box[i] = Math.min(Math.max(Math.round(box[i] / width * dest_width), 0), dest_width);
+                // box[:, 1] = np.clip(np.round(box[:, 1] / height * dest_height), 0, dest_height)
+                box[i + 1] = Math.min(Math.max(Math.round(box[i + 1] / height * dest_height), 0), dest_height);
+            }
+            return box;
+        } finally {
             newContour.release();
         }
-
-        NDArray boxes = NDArrays.stack(boxList);
-
-        // release
-        hierarchy.release();
-
-        return boxes;
     }
 
     /**
@@ -265,9 +289,8 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
      * @param points The predicted box.
      * @return uncliped box
      */
-    private NDArray unClip(NDManager manager, NDArray points) {
-        points = orderPointsClockwise(points);
-        float[] pointsArr = points.toFloatArray();
+    private float[] unClip(float[] points) {
+        float[] pointsArr = orderPointsClockwise(points);
         float[] lt = java.util.Arrays.copyOfRange(pointsArr, 0, 2);
         float[] lb = java.util.Arrays.copyOfRange(pointsArr, 6, 8);
 
@@ -334,9 +357,8 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
                 pointsArr[7] = lb[1] + delta_y + delta_x;
             }
         }
-        points = manager.create(pointsArr).reshape(4, 2);
 
-        return points;
+        return pointsArr;
     }
 
     private float distance(float[] point1, float[] point2) {
@@ -349,21 +371,19 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
     /**
      * Get boxes from the contour or box.
      *
-     * @param contour   The predicted contour.
-     * @param pointsArr The predicted box.
-     * @return smaller side of box
+     * @param rect The min area rect of predicted contour.
+     * @return The predicted box (lt, rt, rb, lb)
      */
-    private int getMiniBoxes(MatOfPoint2f contour, float[][] pointsArr) {
+    private float[] getMiniBoxes(RotatedRect rect) {
         // https://blog.csdn.net/qq_37385726/article/details/82313558
-        // bounding_box[1] - rect 返回矩形的长和宽
-        RotatedRect rect = Imgproc.minAreaRect(contour);
-        Mat points = new Mat();
-        Imgproc.boxPoints(rect, points);
+        // 与 Imgproc.boxPoints 顺序一致，直接在java中计算
+        Point[] vertices = new Point[4];
+        rect.points(vertices);
 
         float[][] fourPoints = new float[4][2];
         for (int row = 0; row < 4; row++) {
-            fourPoints[row][0] = (float) points.get(row, 0)[0];
-            fourPoints[row][1] = (float) points.get(row, 1)[0];
+            fourPoints[row][0] = (float) vertices[row].x;
+            fourPoints[row][1] = (float) vertices[row].y;
         }
 
         float[] tmpPoint = new float[2];
@@ -401,19 +421,11 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
             index_3 = 2;
         }
 
-        pointsArr[0] = fourPoints[index_1];
-        pointsArr[1] = fourPoints[index_2];
-        pointsArr[2] = fourPoints[index_3];
-        pointsArr[3] = fourPoints[index_4];
-
-        int height = rect.boundingRect().height;
-        int width = rect.boundingRect().width;
-        int sside = Math.min(height, width);
-
-        // release
-        points.release();
-
-        return sside;
+        return new float[]{
+                fourPoints[index_1][0], fourPoints[index_1][1],
+                fourPoints[index_2][0], fourPoints[index_2][1],
+                fourPoints[index_3][0], fourPoints[index_3][1],
+                fourPoints[index_4][0], fourPoints[index_4][1]};
     }
 
     /**
@@ -422,54 +434,69 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
      * @param bitmap The binarized image predicted by DB.
      * @param points The predicted box
      */
-    private float boxScoreFast(NDManager manager, NDArray bitmap, NDArray points) {
-        NDArray box = points.get(":");
-        long h = bitmap.getShape().get(0);
-        long w = bitmap.getShape().get(1);
+    private float boxScoreFast(Mat bitmap, float[] points) {
+        int h = bitmap.rows();
+        int w = bitmap.cols();
+        float minX = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < 8; i += 2) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+        }
         // xmin = np.clip(np.floor(box[:, 0].min()).astype(np.int), 0, w - 1)
-        int xmin = box.get(":, 0").min().floor().clip(0, w - 1).toType(DataType.INT32, true).toIntArray()[0];
-        int xmax = box.get(":, 0").max().ceil().clip(0, w - 1).toType(DataType.INT32, true).toIntArray()[0];
-        int ymin = box.get(":, 1").min().floor().clip(0, h - 1).toType(DataType.INT32, true).toIntArray()[0];
-        int ymax = box.get(":, 1").max().ceil().clip(0, h - 1).toType(DataType.INT32, true).toIntArray()[0];
-
-        NDArray mask = manager.zeros(new Shape(ymax - ymin + 1, xmax - xmin + 1), DataType.UINT8);
-
-        box.set(new NDIndex(":, 0"), box.get(":, 0").sub(xmin));
-        box.set(new NDIndex(":, 1"), box.get(":, 1").sub(ymin));
+        int xmin = clip((int) Math.floor(minX), 0, w - 1);
+        int xmax = clip((int) Math.ceil(maxX), 0, w - 1);
+        int ymin = clip((int) Math.floor(minY), 0, h - 1);
+        int ymax = clip((int) Math.ceil(maxY), 0, h - 1);
 
-        //mask - convert from NDArray to Mat
-        Mat maskMat = NDArrayUtils.uint8NDArrayToMat(mask);
-
-        //mask - convert from NDArray to Mat - 4 rows, 2 cols
-        Mat boxMat = NDArrayUtils.floatNDArrayToMat(box, CvType.CV_32S);
-
-//        boxMat.reshape(1, new int[]{1, 4, 2});
-        List<MatOfPoint> pts = new ArrayList<>();
-        MatOfPoint matOfPoint = NDArrayUtils.matToMatOfPoint(boxMat); // new MatOfPoint(boxMat);
-        pts.add(matOfPoint);
-        Imgproc.fillPoly(maskMat, pts, new Scalar(1));
+        Mat maskMat = Mat.zeros(ymax - ymin + 1, xmax - xmin + 1, CvType.CV_8U);
 
+        Point[] shifted = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            shifted[i] = new Point(Math.round(points[i * 2] - xmin), Math.round(points[i * 2 + 1] - ymin));
+        }
+        MatOfPoint matOfPoint = new MatOfPoint(shifted);
+        Imgproc.fillPoly(maskMat, List.of(matOfPoint), new Scalar(1));
 
-        NDArray subBitMap = bitmap.get(ymin + ":" + (ymax + 1) + "," + xmin + ":" + (xmax + 1));
-        Mat bitMapMat = NDArrayUtils.floatNDArrayToMat(subBitMap);
+        // 子区域直接引用概率图，不拷贝数据
+        Mat bitMapMat = bitmap.submat(ymin, ymax + 1, xmin, xmax + 1);
 
         Scalar score = Core.mean(bitMapMat, maskMat);
         float scoreValue = (float) score.val[0];
         // release
         maskMat.release();
-        boxMat.release();
+        matOfPoint.release();
         bitMapMat.release();
 
         return scoreValue;
     }
 
+    private int clip(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
     @Override
     public NDList processInput(TranslatorContext ctx, Image input) {
-        NDArray img = input.toNDArray(ctx.getNDManager());
+        DetGeometry geometry = geometry(input);
+        ctx.setAttachment(GEOMETRY_KEY, geometry);
+        int plane = geometry.getResizeHeight() * geometry.getResizeWidth();
+        float[] data = OpenCVUtils.inputBuffer(3 * plane);
+        writeInput(input, geometry, data, 0, geometry.getResizeWidth(), plane);
+        // 直接按 [1, 3, H, W] 创建输入
+        return new NDList(ctx.getNDManager().create(FloatBuffer.wrap(data, 0, 3 * plane),
+                new Shape(1, 3, geometry.getResizeHeight(), geometry.getResizeWidth())));
+    }
+
+    /**
+     * 计算图片缩放信息（最长边不超过limitSideLen，宽高为32的倍数）
+     */
+    public DetGeometry geometry(Image input) {
         int h = input.getHeight();
         int w = input.getWidth();
-        imgHeight = h;
-        imgWidth = w;
 
         // limit the max side
         float ratio = 1.0f;
@@ -484,25 +511,28 @@ public class OCRDetectionTranslator implements Translator<Image, NDList> {
         int resize_h = (int) (h * ratio);
         int resize_w = (int) (w * ratio);
 
-        resize_h = Math.round((float) resize_h / 32f) * 32;
-        resize_w = Math.round((float) resize_w / 32f) * 32;
-
-        ratioH = resize_h / (float) h;
-        ratioW = resize_w / (float) w;
-
-        img = NDImageUtils.resize(img, resize_w, resize_h);
-
-        img = NDImageUtils.toTensor(img);
-
-        img =
-                NDImageUtils.normalize(
-                        img,
-                        new float[]{0.485f, 0.456f, 0.406f},
-                        new float[]{0.229f, 0.224f, 0.225f});
+        resize_h = Math.max(32, Math.round((float) resize_h / 32f) * 32);
+        resize_w = Math.max(32, Math.round((float) resize_w / 32f) * 32);
 
-        img = img.expandDims(0);
+        float ratio_h = resize_h / (float) h;
+        float ratio_w = resize_w / (float) w;
+        return new DetGeometry(h, w, resize_h, resize_w, ratio_h, ratio_w);
+    }
 
-        return new NDList(img);
+    /**
+     * 缩放、归一化图片并以CHW排列写入目标数组（RGB，ImageNet均值方差）
+     *
+     * @param input       图片
+     * @param geometry    缩放信息
+     * @param dest        目标数组
+     * @param offset      目标数组起始位置
+     * @param rowStride   目标数组每行的长度
+     * @param planeStride 目标数组每个通道的长度
+     */
+    public void writeInput(Image input, DetGeometry geometry, float[] dest, int offset, int rowStride, int planeStride) {
+        Mat mat = (Mat) input.getWrappedImage();
+        OpenCVUtils.resizeToChw(mat, geometry.getResizeWidth(), geometry.getResizeHeight(), true, MEAN, STD,
+                dest, offset, rowStride, planeStride);
     }
 
     @Override
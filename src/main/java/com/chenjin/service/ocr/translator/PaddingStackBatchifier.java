@@ -0,0 +1,94 @@
+package com.chenjin.service.ocr.translator;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.Batchifier;
+import com.chenjin.util.OpenCVUtils;
+
+import java.io.Serial;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * 按最后一维补零后再堆叠的批处理器（不同宽度的文字框图片补齐到同一宽度，同一宽度桶的批次不需要补零）
+ * 补齐、堆叠和拆分都在java数组上完成，不依赖推理引擎的NDArray算子（OnnxRuntime不支持concat、stack、split）
+ */
+public class PaddingStackBatchifier implements Batchifier {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public NDList batchify(NDList[] inputs) {
+        int batchSize = inputs.length;
+        int size = inputs[0].size();
+        NDList batch = new NDList(size);
+        for (int i = 0; i < size; i++) {
+            NDArray first = inputs[0].get(i);
+            checkFloat(first);
+            long[] itemShape = first.getShape().getShape().clone();
+            int lastAxis = itemShape.length - 1;
+            long maxLast = 0;
+            for (NDList input : inputs) {
+                maxLast = Math.max(maxLast, input.get(i).getShape().get(lastAxis));
+            }
+            itemShape[lastAxis] = maxLast;
+            int itemLength = (int) new Shape(itemShape).size();
+            int stride = (int) maxLast;
+
+            // 宽度一致（同一宽度桶）时整块拷贝，否则按行拷贝、每行右侧补零
+            float[] data = OpenCVUtils.inputBuffer(batchSize * itemLength);
+            for (int b = 0; b < batchSize; b++) {
+                NDArray array = inputs[b].get(i);
+                checkFloat(array);
+                FloatBuffer item = array.toByteBuffer().asFloatBuffer();
+                int width = (int) array.getShape().get(lastAxis);
+                if (width == stride) {
+                    item.get(0, data, b * itemLength, itemLength);
+                    continue;
+                }
+                int rows = item.remaining() / Math.max(width, 1);
+                for (int row = 0; row < rows; row++) {
+                    int offset = b * itemLength + row * stride;
+                    item.get(row * width, data, offset, width);
+                    Arrays.fill(data, offset + width, offset + stride, 0f);
+                }
+            }
+            long[] batchShape = new long[itemShape.length + 1];
+            batchShape[0] = batchSize;
+            System.arraycopy(itemShape, 0, batchShape, 1, itemShape.length);
+            NDManager manager = first.getManager();
+            batch.add(manager.create(FloatBuffer.wrap(data, 0, batchSize * itemLength), new Shape(batchShape)));
+        }
+        return batch;
+    }
+
+    @Override
+    public NDList[] unbatchify(NDList inputs) {
+        int batchSize = (int) inputs.head().getShape().get(0);
+        NDList[] items = new NDList[batchSize];
+        for (int b = 0; b < batchSize; b++) {
+            items[b] = new NDList(inputs.size());
+        }
+        for (NDArray array : inputs) {
+            checkFloat(array);
+            Shape itemShape = array.getShape().slice(1);
+            int itemLength = (int) itemShape.size();
+            float[] data = array.toFloatArray();
+            NDManager manager = array.getManager();
+            for (int b = 0; b < batchSize; b++) {
+                items[b].add(manager.create(FloatBuffer.wrap(data, b * itemLength, itemLength), itemShape));
+            }
+        }
+        return items;
+    }
+
+    private void checkFloat(NDArray array) {
+        if (array.getDataType() != DataType.FLOAT32) {
+            throw new IllegalArgumentException("只支持float32类型的批处理：" + array.getDataType());
+        }
+    }
+}
@@ -2,118 +2,166 @@ package com.chenjin.service.ocr.translator;
 
 import ai.djl.Model;
 import ai.djl.modality.cv.Image;
-import ai.djl.modality.cv.util.NDImageUtils;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
-import ai.djl.ndarray.index.NDIndex;
-import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
 import ai.djl.translate.Batchifier;
 import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
 import ai.djl.util.Utils;
+import com.chenjin.pojo.bo.RecognizedText;
+import com.chenjin.util.OpenCVUtils;
+import org.opencv.core.Mat;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 /**
  * 文字识别前后处理
  */
-public class PpWordRecTranslator implements Translator<Image, String> {
-    private List<String> table;
+public class PpWordRecTranslator implements Translator<Image, RecognizedText> {
+    /**
+     * 归一化均值、方差
+     */
+    private static final float[] MEAN = {0.5f, 0.5f, 0.5f};
+    private static final float[] STD = {0.5f, 0.5f, 0.5f};
+
+    /**
+     * 字典下标对应的字符码点，0为CTC空白，-1表示不输出字符
+     */
+    private volatile int[] codePoints;
+
+    /**
+     * 由多个码点组成的字典项（绝大多数字典项为单个字符，这里为空）
+     */
+    private String[] words;
+
     private final boolean useSpaceChar;
 
-    public PpWordRecTranslator(Map<String, ?> arguments) {
+    /**
+     * 输入宽度分桶
+     */
+    private final WidthBuckets widthBuckets;
+
+    public PpWordRecTranslator(Map<String, ?> arguments, WidthBuckets widthBuckets) {
         useSpaceChar =
                 !arguments.containsKey("useSpaceChar") || Boolean.parseBoolean(arguments.get("useSpaceChar").toString());
+        this.widthBuckets = widthBuckets;
     }
 
     @Override
     public void prepare(TranslatorContext ctx) throws IOException {
-        Model model = ctx.getModel();
-        try (InputStream is = model.getArtifact("dict.txt").openStream()) {
-            table = Utils.readLines(is, true);
-            table.add(0, "blank");
-            if(useSpaceChar){
-                table.add(" ");
-                table.add(" ");
+        // 多个推理器共用同一个翻译器，字典只加载一次，加载完成后再对外可见
+        if (null != codePoints) {
+            return;
+        }
+        synchronized (this) {
+            if (null != codePoints) {
+                return;
             }
-            else{
-                table.add("");
-                table.add("");
+            Model model = ctx.getModel();
+            try (InputStream is = model.getArtifact("dict.txt").openStream()) {
+                List<String> lines = Utils.readLines(is, true);
+                lines.add(0, "blank");
+                if(useSpaceChar){
+                    lines.add(" ");
+                    lines.add(" ");
+                }
+                else{
+                    lines.add("");
+                    lines.add("");
+                }
+                int[] table = new int[lines.size()];
+                String[] multiCodePoints = new String[lines.size()];
+                table[0] = -1;
+                for (int i = 1; i < lines.size(); i++) {
+                    String line = lines.get(i);
+                    int count = line.codePointCount(0, line.length());
+                    table[i] = count == 1 ? line.codePointAt(0) : -1;
+                    if (count > 1) {
+                        multiCodePoints[i] = line;
+                    }
+                }
+                words = multiCodePoints;
+                codePoints = table;
             }
-
         }
     }
 
+    /**
+     * CTC贪心解码：一次遍历输出 [T, C]，每一步取最大概率的下标，去掉空白及连续重复后查表得到字符
+     * 同时记录每个输出字符的概率，整体置信度为其平均值
+     */
     @Override
-    public String processOutput(TranslatorContext ctx, NDList list) throws IOException {
-        StringBuilder sb = new StringBuilder();
+    public RecognizedText processOutput(TranslatorContext ctx, NDList list) {
         NDArray tokens = list.singletonOrThrow();
-
-        long[] indices = tokens.get(0).argMax(1).toLongArray();
-        boolean[] selection = new boolean[indices.length];
-        Arrays.fill(selection, true);
-        for (int i = 1; i < indices.length; i++) {
-            if (indices[i] == indices[i - 1]) {
-                selection[i] = false;
+        Shape shape = tokens.getShape();
+        int steps = (int) shape.get(0);
+        int classes = (int) shape.get(1);
+        FloatBuffer logits = tokens.toByteBuffer().asFloatBuffer();
+        int[] table = codePoints;
+
+        StringBuilder sb = new StringBuilder(steps);
+        float[] charProbs = new float[steps];
+        int charCount = 0;
+        float probSum = 0;
+        int last = 0;
+        for (int t = 0, base = 0; t < steps; t++, base += classes) {
+            int best = 0;
+            float bestProb = logits.get(base);
+            for (int c = 1; c < classes; c++) {
+                float prob = logits.get(base + c);
+                if (prob > bestProb) {
+                    bestProb = prob;
+                    best = c;
+                }
             }
-        }
-
-        // 字符置信度
-//        float[] probs = new float[indices.length];
-//        for (int row = 0; row < indices.length; row++) {
-//            NDArray value = tokens.get(0).get(new NDIndex(""+ row +":" + (row + 1) +"," + indices[row] +":" + ( indices[row] + 1)));
-//            probs[row] = value.toFloatArray()[0];
-//        }
-
-        int lastIdx = 0;
-        for (int i = 0; i < indices.length; i++) {
-            if (selection[i] && indices[i] > 0 && !(i > 0 && indices[i] == lastIdx)) {
-                sb.append(table.get((int) indices[i]));
+            if (best > 0 && best != last && (table[best] >= 0 || null != words[best])) {
+                if (table[best] >= 0) {
+                    sb.appendCodePoint(table[best]);
+                } else {
+                    sb.append(words[best]);
+                }
+                charProbs[charCount++] = bestProb;
+                probSum += bestProb;
             }
+            last = best;
         }
-        return sb.toString();
+        return new RecognizedText(sb.toString(), charCount == 0 ? 0 : probSum / charCount,
+                Arrays.copyOf(charProbs, charCount));
     }
 
     @Override
     public NDList processInput(TranslatorContext ctx, Image input) {
-        NDArray img = input.toNDArray(ctx.getNDManager(), Image.Flag.COLOR);
-        int imgC = 3;
-        int imgH = 48;
-        int imgW = 320;
-
-        float max_wh_ratio = (float) imgW / (float) imgH;
-
-        int h = input.getHeight();
-        int w = input.getWidth();
-        float wh_ratio = (float) w / (float) h;
-
-        max_wh_ratio = Math.max(max_wh_ratio,wh_ratio);
-        imgW = (int)(imgH * max_wh_ratio);
-
-        int resized_w;
-        if (Math.ceil(imgH * wh_ratio) > imgW) {
-            resized_w = imgW;
-        } else {
-            resized_w = (int) (Math.ceil(imgH * wh_ratio));
+        int imgH = WidthBuckets.HEIGHT;
+        int contentWidth = WidthBuckets.contentWidth(input);
+        int imgW = widthBuckets.bucketWidth(contentWidth);
+        int resizedW = Math.min(contentWidth, imgW);
+
+        // 缩放、归一化到[-1, 1]并以BGR、CHW写入，桶宽度内右侧补零
+        int plane = imgH * imgW;
+        float[] data = widthBuckets.buffer(imgW);
+        if (resizedW < imgW) {
+            for (int row = 0, rows = WidthBuckets.CHANNELS * imgH; row < rows; row++) {
+                Arrays.fill(data, row * imgW + resizedW, (row + 1) * imgW, 0f);
+            }
         }
-        NDArray resized_image = NDImageUtils.resize(img, resized_w, imgH);
-        resized_image = resized_image.transpose(2, 0, 1).toType(DataType.FLOAT32,false);
-        resized_image.divi(255f).subi(0.5f).divi(0.5f);
-        NDArray padding_im = ctx.getNDManager().zeros(new Shape(imgC, imgH, imgW), DataType.FLOAT32);
-        padding_im.set(new NDIndex(":,:,0:" + resized_w), resized_image);
-
-        padding_im = padding_im.flip(0);
-        padding_im = padding_im.expandDims(0);
-        return new NDList(padding_im);
+        OpenCVUtils.resizeToChw((Mat) input.getWrappedImage(), resizedW, imgH, false, MEAN, STD,
+                data, 0, imgW, plane);
+        // batch维度由批处理器统一添加
+        return new NDList(ctx.getNDManager().create(FloatBuffer.wrap(data, 0, WidthBuckets.CHANNELS * plane),
+                new Shape(WidthBuckets.CHANNELS, imgH, imgW)));
     }
 
+    /**
+     * 批量识别时将同一批次的图片补齐到最大宽度
+     */
     @Override
     public Batchifier getBatchifier() {
-        return null;
+        return new PaddingStackBatchifier();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.chenjin.service.ocr.translator;
+
+import ai.djl.modality.cv.Image;
+
+import java.util.Arrays;
+
+/**
+ * 文字识别输入宽度分桶
+ * 文字框图片缩放到固定高度后，宽度取不小于它的最小桶宽度，推理时只会出现少数几种输入形状，OnnxRuntime可以复用内存规划，
+ * 每个桶的输入缓冲区按线程预先分配、重复使用
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 18:10
+ **/
+public class WidthBuckets {
+
+    /**
+     * 识别模型输入高度
+     */
+    public static final int HEIGHT = 48;
+
+    /**
+     * 输入通道数
+     */
+    public static final int CHANNELS = 3;
+
+    /**
+     * 桶宽度（升序）
+     */
+    private final int[] widths;
+
+    /**
+     * 每个桶的输入缓冲区，超过最大桶宽度的使用最后一个位置
+     */
+    private final ThreadLocal<float[][]> buffers;
+
+    public WidthBuckets(int[] widths) {
+        if (widths.length == 0) {
+            throw new IllegalArgumentException("至少需要一个宽度桶");
+        }
+        this.widths = widths.clone();
+        Arrays.sort(this.widths);
+        if (this.widths[0] <= 0) {
+            throw new IllegalArgumentException("宽度桶必须大于0");
+        }
+        this.buffers = ThreadLocal.withInitial(() -> new float[this.widths.length + 1][]);
+    }
+
+    /**
+     * 文字框图片按比例缩放到模型高度后的宽度
+     */
+    public static int contentWidth(Image image) {
+        float ratio = (float) image.getWidth() / Math.max(1, image.getHeight());
+        return Math.max(1, (int) Math.ceil(HEIGHT * ratio));
+    }
+
+    /**
+     * 文字框图片所在桶的宽度
+     */
+    public int bucketWidth(Image image) {
+        return bucketWidth(contentWidth(image));
+    }
+
+    /**
+     * 不小于内容宽度的最小桶宽度，超过最大桶宽度时按最大桶宽度的整数倍取整（不压缩长文字行）
+     */
+    public int bucketWidth(int contentWidth) {
+        for (int width : widths) {
+            if (contentWidth <= width) {
+                return width;
+            }
+        }
+        int max = widths[widths.length - 1];
+        return (contentWidth + max - 1) / max * max;
+    }
+
+    /**
+     * 当前线程该桶宽度的输入缓冲区（长度为 CHANNELS * HEIGHT * bucketWidth，内容不会清零）
+     */
+    public float[] buffer(int bucketWidth) {
+        int index = Arrays.binarySearch(widths, bucketWidth);
+        if (index < 0) {
+            index = widths.length;
+        }
+        float[][] threadBuffers = buffers.get();
+        int size = CHANNELS * HEIGHT * bucketWidth;
+        float[] buffer = threadBuffers[index];
+        if (null == buffer || buffer.length < size) {
+            buffer = new float[size];
+            threadBuffers[index] = buffer;
+        }
+        return buffer;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(widths);
+    }
+}
@@ -0,0 +1,264 @@
+package com.chenjin.service.pdf.cache;
+
+import com.chenjin.pojo.dto.PdfKeywordPos;
+import com.chenjin.util.KeywordMatcher;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * pdf文字层位置索引
+ * 一次提取整个文档的文字层，按页保存每个字形的文字及坐标，只保存基本类型数据，
+ * 之后同一文档的关键词查找（包括多个关键词）直接在索引上用 {@link KeywordMatcher} 进行，不再解析pdf
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 21:10
+ **/
+public class PdfTextIndex {
+
+    /**
+     * 每个字形保存的坐标数量 x, y, width, height（与TextPosition的DirAdj坐标一致）
+     */
+    static final int BOX_SIZE = 4;
+
+    /**
+     * 各页的文字，下标为页码-1
+     */
+    private final Page[] pages;
+
+    PdfTextIndex(Page[] pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * 提取文档的文字层建立索引
+     *
+     * @param doc pdf文档
+     */
+    public static PdfTextIndex build(PDDocument doc) throws IOException {
+        Collector collector = new Collector(doc.getNumberOfPages());
+        collector.setSortByPosition(true);
+        collector.getText(doc);
+        return new PdfTextIndex(collector.pages());
+    }
+
+    /**
+     * 查找关键词
+     *
+     * @param keyword 关键词
+     * @return 按页码排列的关键词位置，页码从1开始
+     */
+    public LinkedList<PdfKeywordPos> find(String keyword) {
+        return find(new KeywordMatcher(keyword));
+    }
+
+    /**
+     * 查找多个关键词（一次扫描）
+     *
+     * @param keywords 关键词
+     * @return 各关键词按页码排列的位置
+     */
+    public Map<String, LinkedList<PdfKeywordPos>> find(Collection<String> keywords) {
+        KeywordMatcher matcher = new KeywordMatcher(keywords);
+        Map<String, LinkedList<PdfKeywordPos>> keywordPosMap = new LinkedHashMap<>();
+        for (String keyword : matcher.keywords()) {
+            keywordPosMap.put(keyword, new LinkedList<>());
+        }
+        for (PdfKeywordPos keywordPos : find(matcher)) {
+            keywordPosMap.get(keywordPos.getKeyword()).add(keywordPos);
+        }
+        return keywordPosMap;
+    }
+
+    /**
+     * 按页输入字形查找关键词
+     */
+    private LinkedList<PdfKeywordPos> find(KeywordMatcher matcher) {
+        LinkedList<PdfKeywordPos> keywordPosList = new LinkedList<>();
+        KeywordMatcher.Scanner scanner = matcher.scanner();
+        for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+            Page page = pages[pageIndex];
+            scanner.reset();
+            for (int glyph = 0, glyphs = page.glyphCount(); glyph < glyphs; glyph++) {
+                int box = glyph * BOX_SIZE;
+                scanner.glyph(page.text, page.glyphStarts[glyph], page.glyphStarts[glyph + 1], pageIndex + 1,
+                        page.boxes[box], page.boxes[box + 1], page.boxes[box + 2], page.boxes[box + 3], keywordPosList);
+            }
+        }
+        return keywordPosList;
+    }
+
+    /**
+     * 总页数
+     */
+    public int pageCount() {
+        return pages.length;
+    }
+
+    /**
+     * 字形总数（没有文字层的扫描件为0）
+     */
+    public int glyphCount() {
+        int glyphs = 0;
+        for (Page page : pages) {
+            glyphs += page.glyphCount();
+        }
+        return glyphs;
+    }
+
+    /**
+     * 写入磁盘
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(pages.length);
+        for (Page page : pages) {
+            byte[] text = page.text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            int glyphs = page.glyphCount();
+            out.writeInt(glyphs);
+            // 字形的文字长度通常为1，按长度写入
+            for (int i = 0; i < glyphs; i++) {
+                out.writeShort(page.glyphStarts[i + 1] - page.glyphStarts[i]);
+            }
+            for (int i = 0, size = glyphs * BOX_SIZE; i < size; i++) {
+                out.writeFloat(page.boxes[i]);
+            }
+        }
+    }
+
+    /**
+     * 从磁盘读取
+     */
+    static PdfTextIndex read(DataInputStream in) throws IOException {
+        Page[] pages = new Page[in.readInt()];
+        for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            int glyphs = in.readInt();
+            int[] glyphStarts = new int[glyphs + 1];
+            for (int i = 0; i < glyphs; i++) {
+                glyphStarts[i + 1] = glyphStarts[i] + in.readUnsignedShort();
+            }
+            float[] boxes = new float[glyphs * BOX_SIZE];
+            for (int i = 0; i < boxes.length; i++) {
+                boxes[i] = in.readFloat();
+            }
+            pages[pageIndex] = new Page(new String(text, StandardCharsets.UTF_8), glyphStarts, boxes);
+        }
+        return new PdfTextIndex(pages);
+    }
+
+    /**
+     * 一页的文字
+     */
+    static class Page {
+
+        private static final Page EMPTY = new Page("", new int[1], new float[0]);
+
+        /**
+         * 所有字形的文字按顺序拼接
+         */
+        private final String text;
+
+        /**
+         * 第i个字形的文字为 text[glyphStarts[i], glyphStarts[i + 1])（一个字形可能对应多个字符，如连字）
+         */
+        private final int[] glyphStarts;
+
+        /**
+         * 字形坐标，每BOX_SIZE个值为一个字形
+         */
+        private final float[] boxes;
+
+        Page(String text, int[] glyphStarts, float[] boxes) {
+            this.text = text;
+            this.glyphStarts = glyphStarts;
+            this.boxes = boxes;
+        }
+
+        int glyphCount() {
+            return glyphStarts.length - 1;
+        }
+    }
+
+    /**
+     * 提取文字层，记录各页的字形及坐标
+     */
+    private static class Collector extends PDFTextStripper {
+
+        private final Page[] pages;
+
+        private int pageIndex = -1;
+
+        private final StringBuilder text = new StringBuilder();
+
+        private int[] glyphStarts = new int[256];
+
+        private float[] boxes = new float[256 * BOX_SIZE];
+
+        private int glyphs;
+
+        Collector(int totalPages) throws IOException {
+            this.pages = new Page[totalPages];
+        }
+
+        @Override
+        protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
+            int pageNo = getCurrentPageNo() - 1;
+            if (pageNo != pageIndex) {
+                flushPage();
+                pageIndex = pageNo;
+            }
+            for (TextPosition textPosition : textPositions) {
+                if (glyphs + 1 >= glyphStarts.length) {
+                    glyphStarts = Arrays.copyOf(glyphStarts, glyphStarts.length * 2);
+                    boxes = Arrays.copyOf(boxes, glyphStarts.length * BOX_SIZE);
+                }
+                glyphStarts[glyphs] = text.length();
+                text.append(textPosition.getUnicode());
+                int box = glyphs * BOX_SIZE;
+                boxes[box] = textPosition.getXDirAdj();
+                boxes[box + 1] = textPosition.getYDirAdj();
+                boxes[box + 2] = textPosition.getWidthDirAdj();
+                boxes[box + 3] = textPosition.getHeightDir();
+                glyphs++;
+            }
+            super.writeString(string, textPositions);
+        }
+
+        /**
+         * 保存当前页并清空缓冲区
+         */
+        private void flushPage() {
+            if (pageIndex < 0) {
+                return;
+            }
+            glyphStarts[glyphs] = text.length();
+            pages[pageIndex] = new Page(text.toString(), Arrays.copyOf(glyphStarts, glyphs + 1),
+                    Arrays.copyOf(boxes, glyphs * BOX_SIZE));
+            text.setLength(0);
+            glyphs = 0;
+        }
+
+        /**
+         * 提取完成后的各页文字（没有文字的页面为空页）
+         */
+        Page[] pages() {
+            flushPage();
+            pageIndex = -1;
+            for (int i = 0; i < pages.length; i++) {
+                if (null == pages[i]) {
+                    pages[i] = Page.EMPTY;
+                }
+            }
+            return pages;
+        }
+    }
+}
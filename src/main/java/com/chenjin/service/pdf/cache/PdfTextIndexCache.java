@@ -0,0 +1,249 @@
+package com.chenjin.service.pdf.cache;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * pdf文字层位置索引缓存
+ * key为pdf内容的SHA-256（同一份合同多次签章时内容不变），分为内存（caffeine，按字形数量计算容量）和本地磁盘两级
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 21:10
+ **/
+@Slf4j
+public class PdfTextIndexCache {
+
+    /**
+     * 磁盘文件格式标识（格式变化时修改，旧文件读取失败后自动删除）
+     */
+    private static final int FILE_MAGIC = 0x50544932;
+
+    private static final String FILE_SUFFIX = ".idx";
+
+    /**
+     * 每写入多少个磁盘文件检查一次磁盘容量
+     */
+    private static final int PRUNE_INTERVAL = 64;
+
+    private final Cache<String, PdfTextIndex> memory;
+
+    /**
+     * 磁盘缓存目录（为空时不使用磁盘缓存）
+     */
+    private final Path diskDir;
+
+    private final int diskMaxEntries;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong diskWrites = new AtomicLong();
+
+    /**
+     * 构造器
+     *
+     * @param maximumGlyphs     内存中最多缓存的字形数量
+     * @param expireAfterAccess 内存缓存访问过期时间
+     * @param diskDir           磁盘缓存目录（为空时不使用磁盘缓存）
+     * @param diskMaxEntries    磁盘中最多缓存的文档数量
+     */
+    public PdfTextIndexCache(long maximumGlyphs, Duration expireAfterAccess, Path diskDir, int diskMaxEntries) {
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(maximumGlyphs)
+                // 没有文字层的文档也要缓存（之后直接按图片识别），至少计1
+                .weigher((String key, PdfTextIndex index) -> Math.max(1, index.glyphCount()))
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        this.diskMaxEntries = diskMaxEntries;
+        this.diskDir = null == diskDir ? null : initDiskDir(diskDir);
+        log.info("pdf文字层索引缓存初始化完成，磁盘目录：{}", this.diskDir);
+    }
+
+    /**
+     * 计算pdf的缓存key
+     *
+     * @param pdfBytes pdf文件
+     */
+    public String key(byte[] pdfBytes) {
+        return DigestUtil.sha256Hex(pdfBytes);
+    }
+
+    /**
+     * 获取缓存的索引，内存没有时读取磁盘并回填内存
+     *
+     * @param key 缓存key
+     * @return 索引，没有缓存时返回空
+     */
+    public PdfTextIndex get(String key) {
+        PdfTextIndex index = memory.getIfPresent(key);
+        if (null != index) {
+            memoryHits.incrementAndGet();
+            return index;
+        }
+        index = readDisk(key);
+        if (null != index) {
+            diskHits.incrementAndGet();
+            memory.put(key, index);
+            return index;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 保存索引
+     *
+     * @param key   缓存key
+     * @param index 索引
+     */
+    public void put(String key, PdfTextIndex index) {
+        memory.put(key, index);
+        writeDisk(key, index);
+    }
+
+    /**
+     * 缓存使用情况
+     */
+    public Stats stats() {
+        return Stats.builder()
+                .memorySize(memory.estimatedSize())
+                .memoryHits(memoryHits.get())
+                .diskHits(diskHits.get())
+                .misses(misses.get())
+                .evictions(memory.stats().evictionCount())
+                .diskEnabled(null != diskDir)
+                .build();
+    }
+
+    private Path initDiskDir(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            return dir;
+        } catch (IOException e) {
+            log.warn("pdf文字层索引磁盘缓存目录初始化失败，只使用内存缓存：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Path diskFile(String key) {
+        return diskDir.resolve(key + FILE_SUFFIX);
+    }
+
+    /**
+     * 读取磁盘缓存，文件损坏时删除
+     */
+    private PdfTextIndex readDisk(String key) {
+        if (null == diskDir) {
+            return null;
+        }
+        Path file = diskFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("文件格式错误");
+            }
+            return PdfTextIndex.read(in);
+        } catch (IOException e) {
+            log.warn("读取pdf文字层索引磁盘缓存失败：{}，{}", file, e.getMessage());
+            FileUtil.del(file);
+            return null;
+        }
+    }
+
+    /**
+     * 写入磁盘缓存（先写临时文件再移动，避免读到写了一半的文件）
+     */
+    private void writeDisk(String key, PdfTextIndex index) {
+        if (null == diskDir) {
+            return;
+        }
+        Path file = diskFile(key);
+        Path tmpFile = diskDir.resolve(key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(FILE_MAGIC);
+                index.write(out);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入pdf文字层索引磁盘缓存失败：{}，{}", file, e.getMessage());
+            FileUtil.del(tmpFile);
+            return;
+        }
+        if (diskWrites.incrementAndGet() % PRUNE_INTERVAL == 0) {
+            pruneDisk();
+        }
+    }
+
+    /**
+     * 磁盘缓存超过上限时，按最后修改时间删除最旧的文件
+     */
+    private void pruneDisk() {
+        try (Stream<Path> files = Files.list(diskDir)) {
+            Path[] cached = files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .toArray(Path[]::new);
+            int overflow = cached.length - diskMaxEntries;
+            if (overflow <= 0) {
+                return;
+            }
+            Stream.of(cached)
+                    .sorted(Comparator.comparingLong(file -> file.toFile().lastModified()))
+                    .limit(overflow)
+                    .forEach(FileUtil::del);
+        } catch (IOException e) {
+            log.warn("清理pdf文字层索引磁盘缓存失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存使用情况
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        /**
+         * 内存中的索引数量
+         */
+        private long memorySize;
+        /**
+         * 内存命中次数
+         */
+        private long memoryHits;
+        /**
+         * 磁盘命中次数
+         */
+        private long diskHits;
+        /**
+         * 未命中次数
+         */
+        private long misses;
+        /**
+         * 内存淘汰次数
+         */
+        private long evictions;
+        /**
+         * 是否开启磁盘缓存
+         */
+        private boolean diskEnabled;
+    }
+}
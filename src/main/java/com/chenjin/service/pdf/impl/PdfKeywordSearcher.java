@@ -0,0 +1,253 @@
+package com.chenjin.service.pdf.impl;
+
+import com.chenjin.constant.SignConstants;
+import com.chenjin.pojo.dto.PdfKeywordPos;
+import com.chenjin.service.ocr.properties.OcrProperties;
+import com.chenjin.service.pdf.cache.PdfTextIndex;
+import com.chenjin.service.pdf.cache.PdfTextIndexCache;
+import com.chenjin.util.KeywordPositionFinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * pdf关键词查找
+ * 先查找文字层，没有命中时按图片识别；两种方式都按命中方式的顺序逐页查找（LAST从最后一页往前，其他从第一页往后），结果确定后不再查找剩余页面；
+ * ALL、UNIQUE查找页数较多的pdf时文字层按页范围并行提取，每个线程单独打开一份pdf；
+ * 开启文字层索引时，首次查找后在后台为该pdf建立索引，之后同一份pdf的查找直接使用索引
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 20:00
+ **/
+@Slf4j
+@Component
+public class PdfKeywordSearcher {
+
+    /**
+     * ALL、UNIQUE并行提取时每个线程平均分到的页范围数量（范围越小，各线程完成时间越接近）
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final PdfOcrPipeline pdfOcrPipeline;
+
+    private final int textThreads;
+
+    private final int parallelMinPages;
+
+    private final Duration searchTimeout;
+
+    /**
+     * 文字层并行提取线程池（各任务之间没有等待关系，所有请求共用）
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 文字层索引缓存（为空时不使用索引）
+     */
+    private final PdfTextIndexCache textIndexCache;
+
+    /**
+     * 后台建立索引的线程池（单线程，不占用查找的线程）
+     */
+    private final ExecutorService indexExecutor;
+
+    /**
+     * 正在等待或建立索引的pdf，避免同一份pdf重复建立
+     */
+    private final Set<String> indexingKeys = ConcurrentHashMap.newKeySet();
+
+    public PdfKeywordSearcher(PdfOcrPipeline pdfOcrPipeline, ObjectProvider<PdfTextIndexCache> textIndexCache,
+                              OcrProperties ocrProperties) {
+        this.pdfOcrPipeline = pdfOcrPipeline;
+        this.textIndexCache = textIndexCache.getIfAvailable();
+        OcrProperties.Pdf pdf = ocrProperties.getPdf();
+        this.textThreads = pdf.getTextThreads() > 0 ? pdf.getTextThreads() : Runtime.getRuntime().availableProcessors();
+        this.parallelMinPages = pdf.getParallelMinPages();
+        this.searchTimeout = pdf.getSearchTimeout();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(textThreads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-text-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.indexExecutor = null == this.textIndexCache ? null : new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, pdf.getIndex().getQueueSize())), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 查找关键词
+     *
+     * @param doc      pdf文档
+     * @param pdfBytes pdf文件（按图片识别时各渲染线程单独打开）
+     * @param keyword  关键词
+     * @param hitMode  命中方式
+     * @return 按页码排列的关键词位置（文字层的页码从1开始，按图片识别的页码从0开始，与原有签章逻辑一致）
+     */
+    public LinkedList<PdfKeywordPos> search(PDDocument doc, byte[] pdfBytes, String keyword,
+                                            SignConstants.KEYWORD_HIT_MODE hitMode) throws IOException {
+        int totalPages = doc.getNumberOfPages();
+        String indexKey = null == textIndexCache ? null : textIndexCache.key(pdfBytes);
+        PdfTextIndex index = null == indexKey ? null : textIndexCache.get(indexKey);
+        LinkedList<PdfKeywordPos> keywordPosList;
+        if (null != index) {
+            // 已建立索引时直接在索引上查找全部位置，由调用方按命中方式选取
+            keywordPosList = index.find(keyword);
+        } else {
+            // LAST、FIRST通常在最先查找的几页命中，逐页查找即可，并行会让每个线程都解析一遍文档
+            boolean wholeDocument = SignConstants.KEYWORD_HIT_MODE.ALL == hitMode
+                    || SignConstants.KEYWORD_HIT_MODE.UNIQUE == hitMode;
+            keywordPosList = wholeDocument && textThreads > 1 && totalPages >= parallelMinPages
+                    ? searchTextLayerParallel(pdfBytes, totalPages, keyword, hitMode)
+                    : searchTextLayer(doc, keyword, hitMode);
+            if (null != indexKey) {
+                buildIndexLater(indexKey, pdfBytes);
+            }
+        }
+        if (keywordPosList.isEmpty()) {
+            // 文字层没有命中时按图片识别（渲染、识别并行）
+            keywordPosList.addAll(pdfOcrPipeline.locateKeyword(pdfBytes, totalPages, keyword, hitMode));
+        }
+        return keywordPosList;
+    }
+
+    /**
+     * 查找文字层
+     * ALL需要全部页面，一次提取；其他命中方式逐页提取，LAST、FIRST命中一页即结束，UNIQUE命中2个即结束
+     */
+    private LinkedList<PdfKeywordPos> searchTextLayer(PDDocument doc, String keyword,
+                                                      SignConstants.KEYWORD_HIT_MODE hitMode) throws IOException {
+        int totalPages = doc.getNumberOfPages();
+        KeywordPositionFinder finder = new KeywordPositionFinder(keyword);
+        finder.setSortByPosition(true);
+        if (SignConstants.KEYWORD_HIT_MODE.ALL == hitMode) {
+            finder.setStartPage(0);
+            finder.setEndPage(totalPages);
+            finder.getText(doc);
+            return finder.getKeywordPosList();
+        }
+
+        // 按页码排列各页的命中结果
+        TreeMap<Integer, List<PdfKeywordPos>> pageHits = new TreeMap<>();
+        int hits = 0;
+        int searchedPages = 0;
+        for (int index = 0; index < totalPages; index++) {
+            // PDFTextStripper的页码从1开始
+            int pageNo = hitMode.pageAt(totalPages, index) + 1;
+            finder.setStartPage(pageNo);
+            finder.setEndPage(pageNo);
+            finder.getText(doc);
+            searchedPages++;
+            LinkedList<PdfKeywordPos> found = finder.getKeywordPosList();
+            if (found.isEmpty()) {
+                continue;
+            }
+            pageHits.put(pageNo, new ArrayList<>(found));
+            hits += found.size();
+            found.clear();
+            if (SignConstants.KEYWORD_HIT_MODE.UNIQUE != hitMode || hits > 1) {
+                break;
+            }
+        }
+        log.debug("文字层查找关键词[{}]，命中方式：{}，共{}页，查找{}页", keyword, hitMode, totalPages, searchedPages);
+        LinkedList<PdfKeywordPos> keywordPosList = new LinkedList<>();
+        pageHits.values().forEach(keywordPosList::addAll);
+        return keywordPosList;
+    }
+
+    /**
+     * 按页范围并行查找文字层（ALL、UNIQUE）
+     * 各线程按顺序领取连续的页范围；结果确定后其余线程不再领取
+     */
+    private LinkedList<PdfKeywordPos> searchTextLayerParallel(byte[] pdfBytes, int totalPages, String keyword,
+                                                              SignConstants.KEYWORD_HIT_MODE hitMode) {
+        int rangeCount = textThreads * RANGES_PER_THREAD;
+        int rangePages = Math.max(1, (totalPages + rangeCount - 1) / rangeCount);
+        int ranges = (totalPages + rangePages - 1) / rangePages;
+        SearchProgress progress = new SearchProgress(ranges, hitMode);
+        AtomicInteger nextRange = new AtomicInteger();
+        int workers = Math.min(textThreads, ranges);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> extract(pdfBytes, totalPages, rangePages, ranges, keyword,
+                        nextRange, progress)));
+            }
+            progress.await(searchTimeout);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        LinkedList<PdfKeywordPos> keywordPosList = progress.keywordPosList();
+        log.debug("文字层并行查找关键词[{}]，命中方式：{}，共{}页，{}个线程，每个范围{}页", keyword, hitMode,
+                totalPages, workers, rangePages);
+        return keywordPosList;
+    }
+
+    /**
+     * 提取线程：单独打开一份pdf，按查找顺序领取页范围提取
+     */
+    private void extract(byte[] pdfBytes, int totalPages, int rangePages, int ranges, String keyword,
+                         AtomicInteger nextRange, SearchProgress progress) {
+        try (PDDocument view = PDDocument.load(pdfBytes)) {
+            KeywordPositionFinder finder = new KeywordPositionFinder(keyword);
+            finder.setSortByPosition(true);
+            int index;
+            while (!progress.isFinished() && (index = nextRange.getAndIncrement()) < ranges) {
+                // PDFTextStripper的页码从1开始
+                int startPage = index * rangePages + 1;
+                finder.setStartPage(startPage);
+                finder.setEndPage(Math.min(totalPages, startPage + rangePages - 1));
+                finder.getText(view);
+                LinkedList<PdfKeywordPos> found = finder.getKeywordPosList();
+                List<PdfKeywordPos> rangeHits = new ArrayList<>(found);
+                found.clear();
+                progress.complete(index, rangeHits);
+            }
+        } catch (Throwable e) {
+            // 包括提取时的OutOfMemoryError等，避免领取的页范围永远不完成
+            progress.fail(e);
+        }
+    }
+
+    /**
+     * 在后台为pdf建立文字层索引（本次查找按命中方式提前结束，不一定提取了全部页面）
+     */
+    private void buildIndexLater(String indexKey, byte[] pdfBytes) {
+        if (!indexingKeys.add(indexKey)) {
+            return;
+        }
+        try {
+            indexExecutor.execute(() -> {
+                try (PDDocument view = PDDocument.load(pdfBytes)) {
+                    textIndexCache.put(indexKey, PdfTextIndex.build(view));
+                } catch (Exception e) {
+                    log.warn("建立pdf文字层索引失败：{}", e.getMessage());
+                } finally {
+                    indexingKeys.remove(indexKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 等待建立索引的pdf过多，下次查找时再建立
+            indexingKeys.remove(indexKey);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+        if (null != indexExecutor) {
+            indexExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.chenjin.service.pdf.impl;
+
+import com.chenjin.constant.SignConstants;
+import com.chenjin.pojo.bo.TextPos;
+import com.chenjin.pojo.dto.PdfKeywordPos;
+import com.chenjin.service.ocr.OcrService;
+import com.chenjin.service.ocr.model.BlankPageDetector;
+import com.chenjin.service.ocr.properties.OcrProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * pdf按图片查找关键词的渲染、识别流水线
+ * 渲染线程各自打开一份pdf（PDDocument不是线程安全的）按页渲染，每渲染完一页提交给识别线程池识别，
+ * 每个请求渲染完成、尚未识别完的页数有上限；渲染、识别线程池由所有请求共用，线程数量不随并发请求增加。
+ * 结果按页码重新排序，命中方式的结果确定后取消剩余的渲染、识别
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 19:20
+ **/
+@Slf4j
+@Component
+public class PdfOcrPipeline {
+
+    private final OcrService ocrService;
+
+    private final ObjectProvider<BlankPageDetector> blankPageDetector;
+
+    private final OcrProperties.Pdf pdfProperties;
+
+    private final int renderThreads;
+
+    private final int ocrThreads;
+
+    /**
+     * 渲染线程池（渲染任务只等待本请求的识别任务）
+     */
+    private final ExecutorService renderExecutor;
+
+    /**
+     * 识别线程池（识别任务不等待其他任务）
+     */
+    private final ExecutorService ocrExecutor;
+
+    public PdfOcrPipeline(OcrService ocrService, ObjectProvider<BlankPageDetector> blankPageDetector,
+                          OcrProperties ocrProperties) {
+        this.ocrService = ocrService;
+        this.blankPageDetector = blankPageDetector;
+        this.pdfProperties = ocrProperties.getPdf();
+        this.renderThreads = Math.max(1, pdfProperties.getRenderThreads());
+        this.ocrThreads = pdfProperties.getOcrThreads() > 0
+                ? pdfProperties.getOcrThreads() : ocrProperties.getPool().resolveSize();
+        this.renderExecutor = newExecutor("pdf-render-", renderThreads);
+        this.ocrExecutor = newExecutor("pdf-ocr-", ocrThreads);
+    }
+
+    private static ExecutorService newExecutor(String namePrefix, int threads) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 按图片查找关键词
+     *
+     * @param pdfBytes   pdf文件
+     * @param totalPages 总页数
+     * @param keyword    关键词
+     * @param hitMode    命中方式
+     * @return 按页码排列的关键词位置
+     */
+    public List<PdfKeywordPos> locateKeyword(byte[] pdfBytes, int totalPages, String keyword,
+                                             SignConstants.KEYWORD_HIT_MODE hitMode) {
+        if (totalPages <= 0) {
+            return new ArrayList<>();
+        }
+        Pipeline pipeline = new Pipeline(pdfBytes, totalPages, keyword, hitMode);
+        List<Future<?>> renderFutures = new ArrayList<>();
+        try {
+            for (int i = 0, renderers = Math.min(renderThreads, totalPages); i < renderers; i++) {
+                renderFutures.add(renderExecutor.submit(pipeline::render));
+            }
+            pipeline.progress.await(pdfProperties.getSearchTimeout());
+        } finally {
+            renderFutures.forEach(future -> future.cancel(true));
+            pipeline.cancelRecognition();
+        }
+        log.info("ocr查找关键词[{}]，共{}页，识别{}页，跳过空白页{}页", keyword, totalPages,
+                pipeline.recognizedPages.get(), pipeline.skippedPages.get());
+        return pipeline.progress.keywordPosList();
+    }
+
+    @PreDestroy
+    public void close() {
+        renderExecutor.shutdownNow();
+        ocrExecutor.shutdownNow();
+    }
+
+    /**
+     * 一次查找的状态
+     */
+    private class Pipeline {
+
+        private final byte[] pdfBytes;
+
+        private final int totalPages;
+
+        private final String keyword;
+
+        private final SignConstants.KEYWORD_HIT_MODE hitMode;
+
+        private final SearchProgress progress;
+
+        private final BlankPageDetector pageDetector = blankPageDetector.getIfAvailable();
+
+        private final AtomicInteger nextPage = new AtomicInteger();
+
+        /**
+         * 渲染完成、尚未识别完的页数上限（识别线程数 + 等待识别的页数）
+         */
+        private final Semaphore inFlight = new Semaphore(ocrThreads + Math.max(1, pdfProperties.getQueueSize()));
+
+        private final Set<Future<?>> ocrFutures = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger recognizedPages = new AtomicInteger();
+
+        private final AtomicInteger skippedPages = new AtomicInteger();
+
+        Pipeline(byte[] pdfBytes, int totalPages, String keyword, SignConstants.KEYWORD_HIT_MODE hitMode) {
+            this.pdfBytes = pdfBytes;
+            this.totalPages = totalPages;
+            this.keyword = keyword;
+            this.hitMode = hitMode;
+            this.progress = new SearchProgress(totalPages, hitMode);
+        }
+
+        /**
+         * 渲染任务：按命中方式的查找顺序依次领取页码渲染，空白页直接记为没有命中，其他页面编码后提交识别
+         */
+        void render() {
+            try (PDDocument doc = PDDocument.load(pdfBytes)) {
+                PDFRenderer renderer = new PDFRenderer(doc);
+                int index;
+                while (!progress.isFinished() && (index = nextPage.getAndIncrement()) < totalPages) {
+                    int page = hitMode.pageAt(totalPages, index);
+                    BufferedImage image = renderer.renderImageWithDPI(page, pdfProperties.getDpi(), ImageType.GRAY);
+                    // 没有文字内容的页面不进行ocr
+                    if (null != pageDetector && pageDetector.isBlank(image)) {
+                        skippedPages.incrementAndGet();
+                        progress.complete(index, Collections.emptyList());
+                        continue;
+                    }
+                    ByteArrayOutputStream imgOs = new ByteArrayOutputStream();
+                    ImageIO.write(image, "jpg", imgOs);
+                    inFlight.acquire();
+                    int unit = index;
+                    ocrFutures.add(ocrExecutor.submit(() -> recognize(unit, page, imgOs.toByteArray())));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                // 包括渲染时的OutOfMemoryError等，避免领取的页面永远不完成
+                progress.fail(e);
+            }
+        }
+
+        /**
+         * 识别任务：识别一页查找关键词
+         */
+        private void recognize(int index, int pageNo, byte[] imgBytes) {
+            try {
+                if (progress.isFinished()) {
+                    return;
+                }
+                List<TextPos> textPosList = ocrService.locateKeyword(
+                        new ByteArrayInputStream(imgBytes), keyword, hitMode);
+                recognizedPages.incrementAndGet();
+                List<PdfKeywordPos> pageHits = new ArrayList<>(textPosList.size());
+                for (TextPos item : textPosList) {
+                    pageHits.add(PdfKeywordPos.builder()
+                            .keyword(keyword)
+                            .pageNo(pageNo)
+                            .pageX(item.getXPos())
+                            .pageY(item.getYPos())
+                            .build());
+                }
+                progress.complete(index, pageHits);
+            } catch (Throwable e) {
+                progress.fail(e);
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        /**
+         * 取消尚未完成的识别任务
+         */
+        void cancelRecognition() {
+            ocrFutures.forEach(future -> future.cancel(true));
+            ocrFutures.clear();
+        }
+    }
+}
@@ -7,14 +7,11 @@ import cn.hutool.core.util.StrUtil;
 import com.chenjin.constant.SignConstants;
 import com.chenjin.exception.SignException;
 import com.chenjin.pojo.FileStore;
-import com.chenjin.pojo.bo.TextPos;
 import com.chenjin.pojo.dto.PdfKeywordPos;
 import com.chenjin.pojo.dto.SignParams;
 import com.chenjin.service.file.FileService;
-import com.chenjin.service.ocr.OcrService;
 import com.chenjin.service.pdf.PdfService;
 import com.chenjin.util.ImageUtils;
-import com.chenjin.util.KeywordPositionFinder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -28,8 +25,6 @@ import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.visible.PDVisibleSigProperties;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.visible.PDVisibleSignDesigner;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.util.filetypedetector.FileType;
 import org.apache.pdfbox.util.filetypedetector.FileTypeDetector;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
@@ -53,7 +48,6 @@ import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -73,7 +67,7 @@ public class PdfServiceImpl implements PdfService {
 
     private final ResourceLoader resourceLoader;
 
-    private final OcrService ocrService;
+    private final PdfKeywordSearcher pdfKeywordSearcher;
 
     private PrivateKey privateKey;
 
@@ -149,7 +143,8 @@ public class PdfServiceImpl implements PdfService {
         sealIs = new ByteArrayInputStream(sealOs.toByteArray());
         // 获取签章方式
         boolean encipherFlag = null != signParams.getSignatureFlag() && 1 == signParams.getSignatureFlag();
-        try (PDDocument doc = PDDocument.load(pdfIs)) {
+        byte[] pdfBytes = IoUtil.readBytes(pdfIs);
+        try (PDDocument doc = PDDocument.load(pdfBytes)) {
             if (null == doc) {
                 throw new SignException("没有读取到待签章的pdf数据");
             }
@@ -202,36 +197,9 @@ public class PdfServiceImpl implements PdfService {
                 if (StrUtil.isBlank(keyword)) {
                     throw new SignException("关键词签章时，关键词不能为空");
                 }
-                // 获取关键词坐标列表
-                KeywordPositionFinder finder = new KeywordPositionFinder(keyword);
-                finder.setSortByPosition(true);
-                finder.setStartPage(0);
-                int totalPageNum = doc.getNumberOfPages();
-                finder.setEndPage(totalPageNum);
-                finder.getText(doc);
-                // 获取列表
-                LinkedList<PdfKeywordPos> keywordPosList = finder.getKeywordPosList();
-                if (CollUtil.isEmpty(keywordPosList)) {
-                    // 直接检索为空的时候进行ocr检索
-                    PDFRenderer renderer = new PDFRenderer(doc);
-                    AtomicInteger index = new AtomicInteger(0);
-                    for (int i = 0; i < totalPageNum; i++) {
-                        index.set(i);
-                        BufferedImage image = renderer.renderImageWithDPI(i, 300, ImageType.GRAY);
-                        ByteArrayOutputStream imgOs = new ByteArrayOutputStream();
-                        ImageIO.write(image, "jpg", imgOs);
-                        List<TextPos> textPosList = ocrService.recognizeSegmentText(new ByteArrayInputStream(imgOs.toByteArray()), keyword);
-                        if (CollUtil.isNotEmpty(textPosList)) {
-                            List<PdfKeywordPos> tmpKeywordPosList = textPosList.stream().map(item -> PdfKeywordPos.builder()
-                                    .keyword(keyword)
-                                    .pageNo(index.intValue())
-                                    .pageX(item.getXPos())
-                                    .pageY(item.getYPos())
-                                    .build()).toList();
-                            keywordPosList.addAll(tmpKeywordPosList);
-                        }
-                    }
-                }
+                // 获取关键词坐标列表（先查文字层，为空的时候进行ocr检索，均按命中方式的顺序查找，结果确定后即结束）
+                SignConstants.KEYWORD_HIT_MODE hitMode = SignConstants.KEYWORD_HIT_MODE.of(signParams.getMultiPos());
+                LinkedList<PdfKeywordPos> keywordPosList = pdfKeywordSearcher.search(doc, pdfBytes, keyword, hitMode);
                 if (CollUtil.isEmpty(keywordPosList)) {
                     throw new SignException("没有获取到指定关键词，请检查");
                 }
@@ -248,6 +216,17 @@ public class PdfServiceImpl implements PdfService {
                     } else {
                         return normalSign(doc, sealIs, page, pageX, pageY);
                     }
+                } else if (2 == multiPos) {
+                    // 取第一个
+                    PdfKeywordPos posInfo = keywordPosList.getFirst();
+                    PDPage page = doc.getPage(posInfo.getPageNo());
+                    Float pageX = posInfo.getPageX();
+                    Float pageY = posInfo.getPageY();
+                    if (encipherFlag) {
+                        return encipherSign(signParams, doc, sealIs, posInfo.getPageNo(), pageX, pageY);
+                    } else {
+                        return normalSign(doc, sealIs, page, pageX, pageY);
+                    }
                 } else if (0 == multiPos) {
                     if (keywordPosList.size() != 1) {
                         throw new SignException("存在多个关键词，请检查");
@@ -262,23 +241,24 @@ public class PdfServiceImpl implements PdfService {
                         return normalSign(doc, sealIs, page, pageX, pageY);
                     }
                 } else if (1 == multiPos) {
-                    // 多签-循环一个一个签
-                    ByteArrayOutputStream pdfOs = new ByteArrayOutputStream();
-                    PDDocument tmpDoc = doc;
+                    if (!encipherFlag) {
+                        // 多签-所有位置在同一个文档中绘制，只保存一次
+                        return normalSign(doc, sealIs, keywordPosList);
+                    }
+                    // 多签-数字签名每次保存只能包含一个签名，在上一次签名的结果上逐个增量签名（不改变之前签名覆盖的内容）
+                    byte[] sealBytes = IoUtil.readBytes(sealIs);
+                    ByteArrayOutputStream pdfOs = null;
                     for (PdfKeywordPos posInfo : keywordPosList) {
-                        PDPage page = tmpDoc.getPage(posInfo.getPageNo());
-                        Float pageX = posInfo.getPageX();
-                        Float pageY = posInfo.getPageY();
-                        ByteArrayOutputStream tempPdfOs = null;
-                        if (encipherFlag) {
-                            tempPdfOs = encipherSign(signParams, doc, sealIs, posInfo.getPageNo(), pageX, pageY);
-                        } else {
-                            tempPdfOs = normalSign(doc, sealIs, page, pageX, pageY);
+                        PDDocument signDoc = null == pdfOs ? doc : PDDocument.load(pdfOs.toByteArray());
+                        try {
+                            pdfOs = encipherSign(signParams, signDoc, new ByteArrayInputStream(sealBytes),
+                                    posInfo.getPageNo(), posInfo.getPageX(), posInfo.getPageY());
+                        } finally {
+                            if (signDoc != doc) {
+                                signDoc.close();
+                            }
                         }
-                        ByteArrayInputStream tempIs = new ByteArrayInputStream(tempPdfOs.toByteArray());
-                        tmpDoc = PDDocument.load(tempIs);
                     }
-                    tmpDoc.save(pdfOs);
                     return pdfOs;
                 }
             }
@@ -343,6 +323,44 @@ public class PdfServiceImpl implements PdfService {
         return result;
     }
 
+    /**
+     * 普通签章（多个位置）
+     * 先收集所有位置按页分组，相同大小的页面共用一个印章图片对象，每页只追加一次内容流，全部绘制后只保存一次
+     *
+     * @param doc     pdf对象
+     * @param sealIs  印章文件
+     * @param posList 签章位置
+     */
+    private ByteArrayOutputStream normalSign(PDDocument doc, InputStream sealIs, List<PdfKeywordPos> posList) throws IOException {
+        byte[] sealBytes = IoUtil.readBytes(sealIs);
+        Map<Integer, List<PdfKeywordPos>> pagePosMap = posList.stream()
+                .collect(Collectors.groupingBy(PdfKeywordPos::getPageNo, LinkedHashMap::new, Collectors.toList()));
+        // 印章按页面面积缩放，key为页面面积
+        Map<Integer, PDImageXObject> sealImages = new HashMap<>();
+        for (Map.Entry<Integer, List<PdfKeywordPos>> entry : pagePosMap.entrySet()) {
+            PDPage page = doc.getPage(entry.getKey());
+            int pageArea = (int) Math.ceil(page.getMediaBox().getWidth() * page.getMediaBox().getHeight());
+            PDImageXObject sealImage = sealImages.get(pageArea);
+            if (null == sealImage) {
+                ByteArrayOutputStream resultOs = ImageUtils.scalePercent(pageArea, new ByteArrayInputStream(sealBytes), 5);
+                sealImage = createSealImage(doc, new ByteArrayInputStream(resultOs.toByteArray()));
+                if (sealImage == null) {
+                    throw new SignException("不支持此印章信息");
+                }
+                sealImages.put(pageArea, sealImage);
+            }
+            try (PDPageContentStream pageContentStream = new PDPageContentStream(doc, page, PDPageContentStream.AppendMode.APPEND, true, true)) {
+                for (PdfKeywordPos posInfo : entry.getValue()) {
+                    pageContentStream.drawImage(sealImage, posInfo.getPageX(), posInfo.getPageY(),
+                            sealImage.getWidth(), sealImage.getHeight());
+                }
+            }
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        doc.save(result);
+        return result;
+    }
+
     /**
      * 通过签章输入流创建pdf图片对象
      *
@@ -431,8 +449,8 @@ public class PdfServiceImpl implements PdfService {
             return signData(content, privateKey, certificateChain);
         }, signatureOptions);
 
-        // 保存签名后的pdf
-        doc.save(result);
+        // 增量保存签名后的pdf（全量保存会使文档中已有的签名失效）
+        doc.saveIncremental(result);
         doc.close();
         return result;
     }
@@ -0,0 +1,148 @@
+package com.chenjin.service.pdf.impl;
+
+import com.chenjin.constant.SignConstants;
+import com.chenjin.exception.SignException;
+import com.chenjin.pojo.dto.PdfKeywordPos;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并行查找关键词的进度
+ * 查找单元（页或页范围）按命中方式的查找顺序编号，各单元完成后记录结果，命中方式的结果确定、全部完成或出现异常时结束
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 20:30
+ **/
+@Slf4j
+class SearchProgress {
+
+    private final SignConstants.KEYWORD_HIT_MODE hitMode;
+
+    /**
+     * 各查找单元的命中结果，下标为查找顺序（为空表示尚未完成）
+     */
+    private final List<List<PdfKeywordPos>> results;
+
+    private int completed;
+
+    private int hits;
+
+    private volatile boolean finished;
+
+    private Throwable error;
+
+    SearchProgress(int units, SignConstants.KEYWORD_HIT_MODE hitMode) {
+        this.hitMode = hitMode;
+        this.results = new ArrayList<>(Collections.nCopies(units, null));
+        if (units == 0) {
+            finished = true;
+        }
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 查找单元完成
+     *
+     * @param unit      查找顺序
+     * @param unitHits  该单元的命中结果
+     */
+    synchronized void complete(int unit, List<PdfKeywordPos> unitHits) {
+        if (finished) {
+            return;
+        }
+        results.set(unit, unitHits);
+        completed++;
+        hits += unitHits.size();
+        if (completed == results.size() || determined()) {
+            finish();
+        }
+    }
+
+    synchronized void fail(Throwable e) {
+        if (finished) {
+            return;
+        }
+        error = e;
+        finish();
+    }
+
+    /**
+     * 结果是否已经确定
+     * UNIQUE：已命中2个即不唯一；LAST、FIRST：按查找顺序命中单元之前的单元都已完成；ALL：需要全部单元
+     */
+    private boolean determined() {
+        return switch (hitMode) {
+            case UNIQUE -> hits > 1;
+            case LAST, FIRST -> firstHitDetermined();
+            case ALL -> false;
+        };
+    }
+
+    private boolean firstHitDetermined() {
+        for (List<PdfKeywordPos> unitHits : results) {
+            if (null == unitHits) {
+                return false;
+            }
+            if (!unitHits.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * 等待结束，查找过程中出现异常时抛出
+     *
+     * @param timeout 最长等待时间，超时后结束查找并抛出异常
+     */
+    synchronized void await(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (!finished) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    finish();
+                    throw new SignException("pdf查找关键词超时");
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SignException("等待关键词查找结果时被中断");
+        }
+        if (null != error) {
+            log.error("pdf查找关键词失败：", error);
+            throw error instanceof SignException ? (SignException) error
+                    : new SignException(null == error.getMessage() ? error.toString() : error.getMessage());
+        }
+    }
+
+    /**
+     * 已完成单元的命中结果，按页码排列（同一页内保持原有顺序）
+     */
+    synchronized LinkedList<PdfKeywordPos> keywordPosList() {
+        List<PdfKeywordPos> keywordPosList = new ArrayList<>(hits);
+        for (List<PdfKeywordPos> unitHits : results) {
+            if (null != unitHits) {
+                keywordPosList.addAll(unitHits);
+            }
+        }
+        keywordPosList.sort(Comparator.comparing(PdfKeywordPos::getPageNo));
+        return new LinkedList<>(keywordPosList);
+    }
+}
@@ -0,0 +1,245 @@
+package com.chenjin.util;
+
+import com.chenjin.pojo.dto.PdfKeywordPos;
+
+import java.util.*;
+
+/**
+ * 多关键词匹配（Aho–Corasick自动机）
+ * 按关键词建立自动机后，逐个输入pdf字形，一次扫描找出所有关键词的所有位置；匹配可以跨越文字片段，给出起止字形的坐标。
+ * 自动机建立后不再变化，可以在多个线程中共用，每次扫描使用单独的 {@link Scanner}
+ *
+ * @author <yanrui yanrui0910@163.com>
+ * @since 2026-10-18 21:40
+ **/
+public class KeywordMatcher {
+
+    /**
+     * 关键词（去重、去空后）
+     */
+    private final String[] keywords;
+
+    /**
+     * 各状态的转移字符（升序）及目标状态，状态0为根
+     */
+    private final char[][] edgeChars;
+
+    private final int[][] edgeTargets;
+
+    /**
+     * 失配时跳转的状态
+     */
+    private final int[] failure;
+
+    /**
+     * 到达各状态时匹配的关键词下标（包含失配链上的关键词）
+     */
+    private final int[][] outputs;
+
+    /**
+     * 最长关键词的字符数
+     */
+    private final int maxLength;
+
+    /**
+     * 构造器
+     *
+     * @param keywords 关键词
+     */
+    public KeywordMatcher(Collection<String> keywords) {
+        this.keywords = keywords.stream()
+                .filter(keyword -> null != keyword && !keyword.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+        // 建立字典树
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+        int longest = 0;
+        for (int k = 0; k < this.keywords.length; k++) {
+            String keyword = this.keywords[k];
+            longest = Math.max(longest, keyword.length());
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = trie.get(state).get(keyword.charAt(i));
+                if (null == next) {
+                    next = trie.size();
+                    trie.get(state).put(keyword.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            nodeOutputs.get(state).add(k);
+        }
+        this.maxLength = longest;
+        int states = trie.size();
+        this.edgeChars = new char[states][];
+        this.edgeTargets = new int[states][];
+        for (int state = 0; state < states; state++) {
+            TreeMap<Character, Integer> edges = trie.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[state][i] = edge.getKey();
+                edgeTargets[state][i] = edge.getValue();
+                i++;
+            }
+        }
+        // 按层次计算失配跳转，并合并失配链上的关键词
+        this.failure = new int[states];
+        this.outputs = new int[states][];
+        outputs[0] = new int[0];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> matched = nodeOutputs.get(state);
+            int[] inherited = outputs[failure[state]];
+            int[] merged = new int[matched.size() + inherited.length];
+            for (int i = 0; i < matched.size(); i++) {
+                merged[i] = matched.get(i);
+            }
+            System.arraycopy(inherited, 0, merged, matched.size(), inherited.length);
+            outputs[state] = merged;
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                int child = edgeTargets[state][i];
+                failure[child] = state == 0 ? 0 : transition(failure[state], edgeChars[state][i]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 单个关键词
+     */
+    public KeywordMatcher(String keyword) {
+        this(Collections.singletonList(keyword));
+    }
+
+    /**
+     * 关键词（去重、去空后）
+     */
+    public List<String> keywords() {
+        return Arrays.asList(keywords);
+    }
+
+    /**
+     * 开始一次扫描
+     */
+    public Scanner scanner() {
+        return new Scanner();
+    }
+
+    /**
+     * 从state输入字符c后的状态（沿失配链查找）
+     */
+    private int transition(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(edgeChars[state], c);
+            if (i >= 0) {
+                return edgeTargets[state][i];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+
+    /**
+     * 一次扫描的状态，按顺序输入各页的字形，换页时重置
+     * 最近输入的字符及字形坐标保存在长度为最长关键词的环形缓冲区中，用于取得匹配开始的字形
+     */
+    public class Scanner {
+
+        /**
+         * 最近输入的字符所在的字形序号
+         */
+        private final long[] charGlyphs = new long[Math.max(1, maxLength)];
+
+        /**
+         * 最近输入的字形坐标，每4个值为一个字形 x, y, width, height
+         */
+        private final float[] glyphBoxes = new float[Math.max(1, maxLength) * 4];
+
+        private int state;
+
+        private long chars;
+
+        private long glyphs;
+
+        private Scanner() {
+        }
+
+        /**
+         * 重置状态（换页时调用，关键词不跨页匹配）
+         */
+        public void reset() {
+            state = 0;
+        }
+
+        /**
+         * 输入一个字形
+         *
+         * @param unicode 字形的文字（可能有多个字符）
+         * @param pageNo  页码
+         * @param x       x坐标
+         * @param y       y坐标
+         * @param width   宽度
+         * @param height  高度
+         * @param matched 匹配到的关键词位置，按匹配结束的顺序加入
+         */
+        public void glyph(String unicode, int pageNo, float x, float y, float width, float height,
+                          List<PdfKeywordPos> matched) {
+            if (null != unicode) {
+                glyph(unicode, 0, unicode.length(), pageNo, x, y, width, height, matched);
+            }
+        }
+
+        /**
+         * 输入一个字形，字形的文字为 text[start, end)
+         */
+        public void glyph(CharSequence text, int start, int end, int pageNo, float x, float y, float width,
+                          float height, List<PdfKeywordPos> matched) {
+            if (start >= end || keywords.length == 0) {
+                return;
+            }
+            int glyphSlot = (int) (glyphs % charGlyphs.length) * 4;
+            glyphBoxes[glyphSlot] = x;
+            glyphBoxes[glyphSlot + 1] = y;
+            glyphBoxes[glyphSlot + 2] = width;
+            glyphBoxes[glyphSlot + 3] = height;
+            for (int i = start; i < end; i++) {
+                charGlyphs[(int) (chars % charGlyphs.length)] = glyphs;
+                state = transition(state, text.charAt(i));
+                for (int k : outputs[state]) {
+                    matched.add(position(k, pageNo, chars - keywords[k].length() + 1, x, y, width, height));
+                }
+                chars++;
+            }
+            glyphs++;
+        }
+
+        /**
+         * 关键词位置：坐标取第一个字形的左下角，并记录起止字形的坐标
+         */
+        private PdfKeywordPos position(int keyword, int pageNo, long startChar,
+                                       float endX, float endY, float endWidth, float endHeight) {
+            int startSlot = (int) (charGlyphs[(int) (startChar % charGlyphs.length)] % charGlyphs.length) * 4;
+            float[] startBox = Arrays.copyOfRange(glyphBoxes, startSlot, startSlot + 4);
+            return PdfKeywordPos.builder()
+                    .keyword(keywords[keyword])
+                    .pageNo(pageNo)
+                    .pageX(startBox[0])
+                    .pageY(startBox[1])
+                    .startBox(startBox)
+                    .endBox(new float[]{endX, endY, endWidth, endHeight})
+                    .build();
+        }
+    }
+}
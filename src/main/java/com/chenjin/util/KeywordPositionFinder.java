@@ -1,17 +1,20 @@
 package com.chenjin.util;
 
 import com.chenjin.pojo.dto.PdfKeywordPos;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 /**
  * pdf关键词坐标获取工具
+ * 提取文字时将字形逐个输入多关键词自动机，一次提取找出所有关键词的位置（可跨文字片段，不跨页）
  *
  * @author <yanrui yanrui0910@163.com>
  * @since 2024-10-19 17:42
@@ -19,45 +22,49 @@ import java.util.Queue;
 @Getter
 public class KeywordPositionFinder extends PDFTextStripper {
 
-    private final String keyword;
+    private final KeywordMatcher matcher;
 
     private final LinkedList<PdfKeywordPos> keywordPosList = new LinkedList<>();
 
+    @Getter(AccessLevel.NONE)
+    private final KeywordMatcher.Scanner scanner;
+
     /**
      * 构造器
      *
      * @param keyword 关键词
      */
     public KeywordPositionFinder(String keyword) throws IOException {
-        this.keyword = keyword;
+        this(new KeywordMatcher(keyword));
+    }
+
+    /**
+     * 构造器
+     *
+     * @param keywords 多个关键词
+     */
+    public KeywordPositionFinder(Collection<String> keywords) throws IOException {
+        this(new KeywordMatcher(keywords));
+    }
+
+    private KeywordPositionFinder(KeywordMatcher matcher) throws IOException {
+        this.matcher = matcher;
+        this.scanner = matcher.scanner();
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+        scanner.reset();
+        super.startPage(page);
     }
 
     @Override
     protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
-        // 拼接文本来查找关键词
-        StringBuilder builder = new StringBuilder();
+        // 逐个输入字形查找关键词，坐标为关键词第一个字形的左下角 (x, y)
+        int pageNo = getCurrentPageNo();
         for (TextPosition textPosition : textPositions) {
-            builder.append(textPosition.getUnicode());
-        }
-        String fullText = builder.toString();
-
-        // 检查是否包含关键词
-        if (fullText.contains(keyword)) {
-            // 获取关键词的位置和所在页面
-            for (TextPosition textPosition : textPositions) {
-                String character = textPosition.getUnicode();
-                if (keyword.startsWith(character)) {
-                    // 打印关键词所在页面及坐标 (左下角的 x, y 坐标)
-                    PdfKeywordPos keywordPos = PdfKeywordPos.builder()
-                            .keyword(keyword)
-                            .pageNo(getCurrentPageNo())
-                            .pageX(textPosition.getXDirAdj())
-                            .pageY(textPosition.getYDirAdj())
-                            .build();
-                    keywordPosList.offer(keywordPos);
-                    break;
-                }
-            }
+            scanner.glyph(textPosition.getUnicode(), pageNo, textPosition.getXDirAdj(), textPosition.getYDirAdj(),
+                    textPosition.getWidthDirAdj(), textPosition.getHeightDir(), keywordPosList);
         }
         super.writeString(text, textPositions);
     }
@@ -2,6 +2,7 @@ package com.chenjin.util;
 
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
 import java.awt.image.BufferedImage;
@@ -13,15 +14,27 @@ import java.awt.image.DataBufferByte;
 public class OpenCVUtils {
 
     /**
-     * 透视变换
+     * 每个线程复用的像素缓冲区
      */
-    public static Mat perspectiveTransform(Mat src, Mat srcPoints, Mat dstPoints) {
-        Mat dst = src.clone();
-        Mat warp_mat = Imgproc.getPerspectiveTransform(srcPoints, dstPoints);
-        Imgproc.warpPerspective(src, dst, warp_mat, dst.size());
-        warp_mat.release();
+    private static final ThreadLocal<byte[]> PIXEL_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
 
-        return dst;
+    /**
+     * 每个线程复用的模型输入缓冲区
+     */
+    private static final ThreadLocal<float[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new float[0]);
+
+    /**
+     * 获取当前线程复用的模型输入缓冲区（内容不会清零，数据拷贝到NDArray后即可再次使用）
+     *
+     * @param size 需要的最小长度
+     */
+    public static float[] inputBuffer(int size) {
+        float[] buffer = INPUT_BUFFER.get();
+        if (buffer.length < size) {
+            buffer = new float[size];
+            INPUT_BUFFER.set(buffer);
+        }
+        return buffer;
     }
 
     /**
@@ -49,4 +62,61 @@ public class OpenCVUtils {
         mat.put(0, 0, data);
         return mat;
     }
-}
\ No newline at end of file
+
+    /**
+     * 缩放图片并写入CHW排列的float数组，一次遍历完成通道顺序调整、归一化及HWC到CHW的转换
+     * 归一化：(value / 255 - mean) / std
+     *
+     * @param src         原图（8位，1、3或4通道，多通道时为BGR顺序）
+     * @param width       缩放后的宽度
+     * @param height      缩放后的高度
+     * @param rgb         输出通道是否为RGB顺序（否则为BGR顺序）
+     * @param mean        输出通道顺序的均值
+     * @param std         输出通道顺序的标准差
+     * @param dest        目标数组
+     * @param offset      目标数组起始位置
+     * @param rowStride   目标数组每行的长度（大于width时多出的部分不写入）
+     * @param planeStride 目标数组每个通道的长度
+     */
+    public static void resizeToChw(Mat src, int width, int height, boolean rgb, float[] mean, float[] std,
+                                   float[] dest, int offset, int rowStride, int planeStride) {
+        Mat resized = src;
+        if (src.cols() != width || src.rows() != height) {
+            resized = new Mat();
+            Imgproc.resize(src, resized, new Size(width, height), 0, 0, Imgproc.INTER_LINEAR);
+        } else if (!src.isContinuous()) {
+            resized = src.clone();
+        }
+        int channels = resized.channels();
+        byte[] pixels = PIXEL_BUFFER.get();
+        int length = width * height * channels;
+        if (pixels.length < length) {
+            pixels = new byte[length];
+            PIXEL_BUFFER.set(pixels);
+        }
+        resized.get(0, 0, pixels);
+        if (resized != src) {
+            resized.release();
+        }
+
+        // 输出通道c对应的原图通道
+        int[] srcChannel = new int[3];
+        float[] scale = new float[3];
+        float[] bias = new float[3];
+        for (int c = 0; c < 3; c++) {
+            srcChannel[c] = channels == 1 ? 0 : (rgb ? 2 - c : c);
+            scale[c] = 1f / (255f * std[c]);
+            bias[c] = -mean[c] / std[c];
+        }
+        for (int y = 0; y < height; y++) {
+            int srcRow = y * width * channels;
+            int destRow = offset + y * rowStride;
+            for (int x = 0; x < width; x++) {
+                int srcPixel = srcRow + x * channels;
+                for (int c = 0; c < 3; c++) {
+                    dest[destRow + c * planeStride + x] = (pixels[srcPixel + srcChannel[c]] & 0xFF) * scale[c] + bias[c];
+                }
+            }
+        }
+    }
+}